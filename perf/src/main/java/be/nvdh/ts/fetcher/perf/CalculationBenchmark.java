@@ -0,0 +1,77 @@
+package be.nvdh.ts.fetcher.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.nvdh.ts.domain.Prestation;
+import be.nvdh.ts.fetcher.PrestationAggregation;
+import be.nvdh.ts.fetcher.PrestationAggregator;
+import be.nvdh.ts.fetcher.TimesheetKernel;
+
+/**
+ * The day total with manual registrations, as the fetcher computes it, and the week and month results of a month of prestations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalculationBenchmark {
+	
+	@Param({"0", "2", "4", "8", "20"})
+	public int registrations;
+	
+	private final TimesheetKernel kernel = new TimesheetKernel(30, 12 * 60, 14 * 60);
+	
+	private List<LocalTime> tickTimes;
+	private List<LocalTime> manualRegistrations;
+	private List<Prestation> prestations;
+	
+	@Setup
+	public void setUp() {
+		tickTimes = registrations(new LocalTime(7, 30), registrations);
+		manualRegistrations = registrations(new LocalTime(7, 45), registrations / 4 * 2);
+		prestations = new ArrayList<Prestation>();
+		for (LocalDate date = Fixtures.MONTH; date.getMonthOfYear() == Fixtures.MONTH.getMonthOfYear(); date = date.plusDays(1)) {
+			Duration total = Duration.standardMinutes(8 * 60 + date.getDayOfMonth() % 5 * 10);
+			Duration needed = Duration.standardHours(8);
+			prestations.add(new Prestation(date, total, needed, total.minus(needed), null, tickTimes, manualRegistrations, "L", null, ""));
+		}
+	}
+	
+	@Benchmark
+	public int totalWithManualRegistrations() {
+		return kernel.totalWithManualRegistrations(0, tickTimes, manualRegistrations);
+	}
+	
+	@Benchmark
+	public PrestationAggregation aggregateMonth() {
+		return PrestationAggregator.aggregate(prestations);
+	}
+	
+	private static List<LocalTime> registrations(LocalTime first, int count) {
+		List<LocalTime> registrations = new ArrayList<LocalTime>();
+		for (int i = 0; i < count; i++) {
+			registrations.add(first.plusMinutes(30 * i));
+		}
+		return registrations;
+	}
+
+}
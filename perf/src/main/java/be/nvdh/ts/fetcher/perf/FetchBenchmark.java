@@ -0,0 +1,74 @@
+package be.nvdh.ts.fetcher.perf;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.exception.FetchException;
+import be.nvdh.ts.fetcher.ElineFetcher;
+
+/**
+ * A whole month fetch, from the postbacks to the result, served by a {@link FixtureTransport} instead of the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchBenchmark {
+	
+	@Param({"0", "4", "20"})
+	public int registrations;
+	
+	@Param({"1", "4"})
+	public int concurrency;
+	
+	@Param({"true", "false"})
+	public boolean streamingParser;
+	
+	private ElineFetcher fetcher;
+	
+	@Setup
+	public void setUp() {
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("url", "http://prdecerto/default.aspx");
+		config.put("minutesPerDay", "480");
+		config.put("minutesLunch", "30");
+		config.put("concurrency", String.valueOf(concurrency));
+		config.put("streamingParser", String.valueOf(streamingParser));
+		config.put("metrics", "none");
+		fetcher = new ElineFetcher();
+		fetcher.init(config);
+		fetcher.setTransport(new FixtureTransport(new PrdecertoPages(Fixtures.VIEW_STATE_LENGTH), registrations));
+	}
+	
+	/**
+	 * Stops the fetcher's executors, so the worker threads of one trial do not run on into the next.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fetcher.close();
+	}
+	
+	@Benchmark
+	public FetchResult fetchMonth() throws FetchException {
+		return fetcher.fetch(Fixtures.MONTH.toDate());
+	}
+
+}
@@ -0,0 +1,64 @@
+package be.nvdh.ts.fetcher.perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Arrays;
+
+import org.joda.time.LocalDate;
+
+import be.nvdh.ts.fetcher.CookieJar;
+import be.nvdh.ts.fetcher.FetchContext;
+import be.nvdh.ts.fetcher.HttpTransport;
+import be.nvdh.ts.fetcher.TransportResponse;
+
+/**
+ * Answers the requests of the fetcher from {@link PrdecertoPages} without touching the network, so whole fetches can be measured offline.
+ */
+public class FixtureTransport implements HttpTransport {
+	
+	private static final String UTF_8 = "UTF-8";
+	private static final String EVENTARGUMENT = "__EVENTARGUMENT";
+	private static final String MENU_REGISTRATIES = "registraties";
+	
+	private final PrdecertoPages pages;
+	private final int registrationsPerDay;
+	
+	public FixtureTransport(PrdecertoPages pages, int registrationsPerDay) {
+		this.pages = pages;
+		this.registrationsPerDay = registrationsPerDay;
+	}
+
+	public TransportResponse get(String url, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+		cookies.store(Arrays.asList(PrdecertoPages.SESSION_COOKIE + "=fixture; path=/", PrdecertoPages.AUTH_COOKIE + "=fixture; path=/"));
+		return response(url, pages.homePage());
+	}
+
+	public TransportResponse post(String url, byte[] formBody, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+		String argument = eventArgument(new String(formBody, UTF_8));
+		if (MENU_REGISTRATIES.equals(argument)){
+			return response(url, pages.registrationsPage(new LocalDate()));
+		} else if (PrdecertoPages.isNavigationCode(argument)){
+			return response(url, pages.registrationsPage(PrdecertoPages.fromCode(argument)));
+		}
+		return response(url, pages.dayPage(PrdecertoPages.fromCode(argument), registrationsPerDay));
+	}
+	
+	private TransportResponse response(String url, String page) throws IOException {
+		long startNanos = System.nanoTime();
+		return new TransportResponse(new URL(url), 200, UTF_8, new ByteArrayInputStream(page.getBytes(UTF_8)), startNanos, null);
+	}
+	
+	static String eventArgument(String formBody) throws UnsupportedEncodingException {
+		for (String field : formBody.split("&")) {
+			int separator = field.indexOf('=');
+			if (separator > 0 && EVENTARGUMENT.equals(URLDecoder.decode(field.substring(0, separator), UTF_8))){
+				return URLDecoder.decode(field.substring(separator + 1), UTF_8);
+			}
+		}
+		return "";
+	}
+
+}
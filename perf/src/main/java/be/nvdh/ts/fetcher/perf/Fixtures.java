@@ -0,0 +1,17 @@
+package be.nvdh.ts.fetcher.perf;
+
+import org.joda.time.LocalDate;
+
+/**
+ * What the benchmarks share: a month in the past, so no day counts as today, and the view state size of a typical page.
+ */
+final class Fixtures {
+	
+	static final String DIRECTORY_PROPERTY = "prdecerto.fixtures";
+	static final LocalDate MONTH = new LocalDate(2015, 3, 1);
+	static final int VIEW_STATE_LENGTH = 20000;
+	
+	private Fixtures() {
+	}
+
+}
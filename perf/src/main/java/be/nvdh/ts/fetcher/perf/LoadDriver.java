@@ -0,0 +1,210 @@
+package be.nvdh.ts.fetcher.perf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.fetcher.Account;
+import be.nvdh.ts.fetcher.DaemonThreadFactory;
+import be.nvdh.ts.fetcher.ElineFetcher;
+import be.nvdh.ts.fetcher.PartialFetchResult;
+
+/**
+ * Lets a number of concurrent users fetch a month over and over, each with an account and session of their own, and reports the throughput
+ * and latency percentiles of the fetches. Without a url it starts a {@link PrdecertoServer} to fetch from.
+ * <p>
+ * Options are given as name=value: users, fetches (per user), month (yyyy-MM), url, concurrency, streamingParser,
+ * and for the embedded server latency, jitter (milliseconds), errorRate (0 to 1), viewState (characters), registrations (per day),
+ * sessionTimeout (milliseconds) and serverThreads.
+ */
+public class LoadDriver {
+	
+	private final ElineFetcher fetcher;
+	private final String url;
+	
+	public LoadDriver(ElineFetcher fetcher, String url) {
+		this.fetcher = fetcher;
+		this.url = url;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = options(args);
+		PrdecertoServer server = null;
+		String url = options.get("url");
+		if (url == null){
+			server = new PrdecertoServer(0, intOption(options, "serverThreads", 64), new PrdecertoPages(intOption(options, "viewState", Fixtures.VIEW_STATE_LENGTH)));
+			server.setLatency(intOption(options, "latency", 20), intOption(options, "jitter", 10));
+			server.setErrorRate(Double.parseDouble(option(options, "errorRate", "0")));
+			server.setRegistrationsPerDay(intOption(options, "registrations", 4));
+			if (options.containsKey("sessionTimeout")){
+				server.setSessionTimeoutMillis(Long.parseLong(options.get("sessionTimeout")));
+			}
+			server.start();
+			url = server.getUrl();
+		}
+		
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("url", url);
+		config.put("minutesPerDay", "480");
+		config.put("minutesLunch", "30");
+		config.put("concurrency", option(options, "concurrency", "1"));
+		config.put("streamingParser", option(options, "streamingParser", "true"));
+		config.put("metrics", "none");
+		ElineFetcher fetcher = new ElineFetcher();
+		fetcher.init(config);
+		
+		LocalDate month = options.containsKey("month") ? LocalDate.parse(options.get("month") + "-01") : new LocalDate().minusMonths(1).withDayOfMonth(1);
+		LoadReport report = new LoadDriver(fetcher, url).run(intOption(options, "users", 10), intOption(options, "fetches", 5), month);
+		System.out.println(report);
+		fetcher.close();
+		if (server != null){
+			System.out.println("server: " + server.getRequests() + " requests, " + server.getErrors() + " errors, " + server.getLogins() + " logins, "
+					+ server.getBytesSent() / 1024 + " KiB sent, " + String.format("%.1f", server.getRequests() / report.getElapsedSeconds()) + " requests/s");
+			server.stop();
+		}
+	}
+	
+	public LoadReport run(int users, final int fetchesPerUser, final LocalDate month) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(users, new DaemonThreadFactory("user"));
+		try {
+			List<Future<UserRun>> runs = new ArrayList<Future<UserRun>>();
+			long startNanos = System.nanoTime();
+			for (int user = 1; user <= users; user++) {
+				final Account account = new Account("user" + user, url);
+				runs.add(executor.submit(new Callable<UserRun>() {
+					public UserRun call() {
+						return fetchRepeatedly(account, fetchesPerUser, month);
+					}
+				}));
+			}
+			LoadReport report = new LoadReport(users);
+			for (Future<UserRun> run : runs) {
+				report.add(run.get());
+			}
+			report.elapsedNanos = System.nanoTime() - startNanos;
+			return report;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private UserRun fetchRepeatedly(Account account, int fetches, LocalDate month) {
+		UserRun run = new UserRun(fetches);
+		for (int i = 0; i < fetches; i++) {
+			long startNanos = System.nanoTime();
+			try {
+				FetchResult result = fetcher.fetch(account, month.toDate());
+				if (result instanceof PartialFetchResult){
+					run.partial++;
+				}
+				run.latencies[run.completed++] = System.nanoTime() - startNanos;
+			} catch (Exception e) {
+				run.failed++;
+			}
+		}
+		return run;
+	}
+	
+	private static Map<String, String> options(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator <= 0){
+				throw new IllegalArgumentException("Expected name=value instead of " + arg);
+			}
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		return options;
+	}
+	
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		return options.containsKey(name) ? options.get(name) : defaultValue;
+	}
+	
+	private static int intOption(Map<String, String> options, String name, int defaultValue) {
+		return Integer.parseInt(option(options, name, String.valueOf(defaultValue)));
+	}
+	
+	private static class UserRun {
+		
+		private final long[] latencies;
+		private int completed;
+		private int partial;
+		private int failed;
+		
+		UserRun(int fetches) {
+			this.latencies = new long[fetches];
+		}
+		
+	}
+	
+	public static class LoadReport {
+		
+		private final int users;
+		private long[] latencies = new long[0];
+		private int partial;
+		private int failed;
+		private long elapsedNanos;
+		
+		LoadReport(int users) {
+			this.users = users;
+		}
+		
+		private void add(UserRun run) {
+			int size = latencies.length;
+			latencies = Arrays.copyOf(latencies, size + run.completed);
+			System.arraycopy(run.latencies, 0, latencies, size, run.completed);
+			Arrays.sort(latencies);
+			partial += run.partial;
+			failed += run.failed;
+		}
+		
+		public int getCompleted() {
+			return latencies.length;
+		}
+		
+		public int getPartial() {
+			return partial;
+		}
+		
+		public int getFailed() {
+			return failed;
+		}
+		
+		public double getElapsedSeconds() {
+			return elapsedNanos / 1e9;
+		}
+		
+		public double getThroughput() {
+			return latencies.length / getElapsedSeconds();
+		}
+		
+		/**
+		 * @return the latency in milliseconds below which the percentage of the completed fetches stayed
+		 */
+		public double percentileMillis(double percentile) {
+			if (latencies.length == 0){
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+		
+		public String toString() {
+			return String.format("%d users: %d fetches completed (%d partial), %d failed in %.1f s, %.2f fetches/s%nlatency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+					users, getCompleted(), partial, failed, getElapsedSeconds(), getThroughput(), percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(100));
+		}
+		
+	}
+
+}
@@ -0,0 +1,74 @@
+package be.nvdh.ts.fetcher.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.nvdh.ts.fetcher.CalendarIndex;
+import be.nvdh.ts.fetcher.DayPageExtractor;
+import be.nvdh.ts.fetcher.DayPageScanner;
+import be.nvdh.ts.fetcher.DayRegistration;
+
+/**
+ * Reading the registrations page and the day pages, with the jsoup document and with the streaming scanner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark {
+	
+	@Param({"0", "2", "4", "8", "20"})
+	public int registrations;
+	
+	@Param({"20000"})
+	public int viewStateLength;
+	
+	private LocalDate date;
+	private String dayPage;
+	private String registrationsPage;
+	
+	@Setup
+	public void setUp() throws IOException {
+		String fixtureDirectory = System.getProperty(Fixtures.DIRECTORY_PROPERTY);
+		PrdecertoPages pages = new PrdecertoPages(viewStateLength, fixtureDirectory != null ? new File(fixtureDirectory) : null);
+		date = Fixtures.MONTH.plusDays(9);
+		dayPage = pages.dayPage(date, registrations);
+		registrationsPage = pages.registrationsPage(Fixtures.MONTH);
+	}
+	
+	@Benchmark
+	public DayRegistration extractDayPage() throws IOException {
+		return DayPageExtractor.extract(Jsoup.parse(dayPage), date);
+	}
+	
+	@Benchmark
+	public DayRegistration scanDayPage() throws IOException {
+		DayPageScanner scanner = new DayPageScanner(new DayPageExtractor());
+		scanner.scan(new StringReader(dayPage));
+		return scanner.getExtractor().toDayRegistration(date);
+	}
+	
+	@Benchmark
+	public CalendarIndex indexRegistrationsPage() {
+		return CalendarIndex.build(Jsoup.parse(registrationsPage), PrdecertoPages.CALENDAR_TARGET);
+	}
+
+}
@@ -0,0 +1,150 @@
+package be.nvdh.ts.fetcher.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+/**
+ * Renders the pages of prdecerto the way the fetcher reads them: the home page, the registrations page with its calendar and the day pages.
+ * The markup around the elements the fetcher reads is filler of the same kind, and the view state is padded to the given length.
+ * Day pages recorded from prdecerto are used instead when a fixture directory holds a day-N.html for N registrations.
+ */
+public class PrdecertoPages {
+	
+	public static final String CALENDAR_TARGET = "registraties$CalThisMonth";
+	public static final String SESSION_COOKIE  = "ASP.NET_SessionId";
+	public static final String AUTH_COOKIE     = ".AUTHDEF";
+	
+	private static final LocalDate DAY_ZERO = new LocalDate(2000, 1, 1);
+	private static final LocalTime FIRST_REGISTRATION = new LocalTime(7, 30);
+	private static final String NAVIGATION_PREFIX = "V";
+	private static final String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final String viewState;
+	private final File fixtureDirectory;
+	
+	public PrdecertoPages(int viewStateLength) {
+		this(viewStateLength, null);
+	}
+	
+	public PrdecertoPages(int viewStateLength, File fixtureDirectory) {
+		this.viewState = viewState(viewStateLength);
+		this.fixtureDirectory = fixtureDirectory;
+	}
+	
+	public static String dayCode(LocalDate date) {
+		return String.valueOf(Days.daysBetween(DAY_ZERO, date).getDays());
+	}
+	
+	public static String navigationCode(LocalDate month) {
+		return NAVIGATION_PREFIX + dayCode(month);
+	}
+	
+	/**
+	 * @return the date or month selected by a calendar postback argument
+	 */
+	public static LocalDate fromCode(String code) {
+		String days = code.startsWith(NAVIGATION_PREFIX) ? code.substring(NAVIGATION_PREFIX.length()) : code;
+		return DAY_ZERO.plusDays(Integer.parseInt(days));
+	}
+	
+	public static boolean isNavigationCode(String code) {
+		return code.startsWith(NAVIGATION_PREFIX);
+	}
+	
+	public String homePage() {
+		return page("<div id=\"welkom\">Welkom in e-line</div>");
+	}
+	
+	/**
+	 * @return the registrations page with the calendar showing the month, including the days of the surrounding weeks
+	 */
+	public String registrationsPage(LocalDate month) {
+		LocalDate firstDay = month.withDayOfMonth(1);
+		StringBuilder calendar = new StringBuilder("<table id=\"registraties_CalThisMonth\" class=\"calendar\"><tr>");
+		calendar.append("<td>").append(postBackLink(navigationCode(firstDay.minusMonths(1)), "&lt;")).append("</td>");
+		calendar.append("<td colspan=\"5\">").append(firstDay.toString("MMMM yyyy")).append("</td>");
+		calendar.append("<td>").append(postBackLink(navigationCode(firstDay.plusMonths(1)), "&gt;")).append("</td></tr>");
+		LocalDate day = firstDay.minusDays(firstDay.getDayOfWeek() - 1);
+		LocalDate end = firstDay.plusMonths(1);
+		while (day.isBefore(end)) {
+			calendar.append("<tr>");
+			for (int weekDay = 0; weekDay < 7; weekDay++, day = day.plusDays(1)) {
+				calendar.append("<td class=\"day\">").append(postBackLink(dayCode(day), String.valueOf(day.getDayOfMonth()))).append("</td>");
+			}
+			calendar.append("</tr>");
+		}
+		calendar.append("</table>");
+		return page(calendar.toString());
+	}
+	
+	/**
+	 * @return the page of the day with the given number of clock registrations, which alternate between coming in and going out every half hour from 7:30
+	 */
+	public String dayPage(LocalDate date, int registrations) throws IOException {
+		File recordedPage = fixtureDirectory != null ? new File(fixtureDirectory, "day-" + registrations + ".html") : null;
+		if (recordedPage != null && recordedPage.isFile()){
+			return new String(Files.readAllBytes(recordedPage.toPath()), UTF_8);
+		}
+		StringBuilder content = new StringBuilder();
+		content.append("<h2>").append(date.toString("EEEE d MMMM yyyy")).append("</h2>");
+		content.append("<table id=\"registraties_dgrPlanningen\" class=\"grid\"><tr><th>Code</th><th>Omschrijving</th></tr>");
+		content.append("<tr><td><span id=\"registraties_dgrPlanningen__ctl2_lblCode\">L</span></td><td><span id=\"registraties_dgrPlanningen__ctl2_lblOmschrijving\">Normale werkdag</span></td></tr></table>");
+		content.append("<table id=\"registraties_dgrRegistraties\" class=\"grid\"><tr><th>Tijd</th><th>Richting</th><th>Terminal</th></tr>");
+		LocalTime time = FIRST_REGISTRATION;
+		for (int row = 0; row < registrations; row++, time = time.plusMinutes(30)) {
+			String control = "registraties_dgrRegistraties__ctl" + (row + 2);
+			content.append("<tr class=\"").append(row % 2 == 0 ? "row" : "alternate").append("\">");
+			content.append("<td><span id=\"").append(control).append("_lblRegistratieTijd\">").append(time.toString("HH:mm")).append("</span></td>");
+			content.append("<td><span id=\"").append(control).append("_lblRichting\">").append(row % 2 == 0 ? "IN" : "UIT").append("</span></td>");
+			content.append("<td><span id=\"").append(control).append("_lblTerminal\">Hoofdingang</span></td></tr>");
+		}
+		content.append("</table>");
+		content.append("<table id=\"registraties_dgrRgAanvragen\" class=\"grid\"><tr><th>Tijdstip</th><th>Status</th></tr></table>");
+		content.append("<table id=\"registraties_dgrOnregelmatigheden\" class=\"grid\"><tr><th>Onregelmatigheid</th></tr></table>");
+		content.append("<div class=\"totals\">Totaal gepresteerd: <span id=\"registraties_lblTotaalGepresteerd\">").append(registrations > 1 ? "8u0" : "0u0").append("</span></div>");
+		return page(content.toString());
+	}
+	
+	private String page(String content) {
+		StringBuilder page = new StringBuilder();
+		page.append("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\" \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd\">");
+		page.append("<html><head><title>e-line</title><link rel=\"stylesheet\" href=\"styles/eline.css\" />");
+		page.append("<script type=\"text/javascript\">function __doPostBack(eventTarget, eventArgument) { var theForm = document.forms['Form1']; ");
+		page.append("if (!theForm.onsubmit || (theForm.onsubmit() != false)) { theForm.__EVENTTARGET.value = eventTarget; theForm.__EVENTARGUMENT.value = eventArgument; theForm.submit(); } }</script>");
+		page.append("</head><body><form name=\"Form1\" method=\"post\" action=\"default.aspx\" id=\"Form1\">");
+		page.append("<input type=\"hidden\" name=\"__EVENTTARGET\" id=\"__EVENTTARGET\" value=\"\" />");
+		page.append("<input type=\"hidden\" name=\"__EVENTARGUMENT\" id=\"__EVENTARGUMENT\" value=\"\" />");
+		page.append("<input type=\"hidden\" name=\"__VIEWSTATE\" id=\"__VIEWSTATE\" value=\"").append(viewState).append("\" />");
+		page.append("<input type=\"hidden\" name=\"__EVENTVALIDATION\" id=\"__EVENTVALIDATION\" value=\"").append(viewState, 0, Math.min(64, viewState.length())).append("\" />");
+		page.append("<table id=\"mnuHoofd\" class=\"menu\"><tr>");
+		for (String item : new String[]{"registraties", "afwezigheden", "saldi", "planning"}) {
+			page.append("<td>").append(postBackLink("mnuHoofd", item, item)).append("</td>");
+		}
+		page.append("</tr></table><div id=\"content\">").append(content).append("</div></form></body></html>");
+		return page.toString();
+	}
+	
+	private String postBackLink(String argument, String text) {
+		return postBackLink(CALENDAR_TARGET, argument, text);
+	}
+	
+	private String postBackLink(String target, String argument, String text) {
+		return "<a href=\"javascript:__doPostBack('" + target + "','" + argument + "')\" style=\"color:Black\" title=\"" + argument + "\">" + text + "</a>";
+	}
+	
+	private static String viewState(int length) {
+		StringBuilder viewState = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			viewState.append(BASE64.charAt((i * 31 + i / 7) % BASE64.length()));
+		}
+		return viewState.toString();
+	}
+
+}
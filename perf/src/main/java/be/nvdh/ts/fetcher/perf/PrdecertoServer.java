@@ -0,0 +1,243 @@
+package be.nvdh.ts.fetcher.perf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.LocalDate;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import be.nvdh.ts.fetcher.DaemonThreadFactory;
+
+/**
+ * Stands in for prdecerto: the home page hands out the session cookies, the mnuHoofd postback opens the registrations page
+ * and registraties$CalThisMonth postbacks navigate the calendar and open day pages. Postbacks need a live session and a view state;
+ * without a session the answer redirects to the login page, which has no view state.
+ * Every answer is delayed by the latency plus a random jitter, and day pages fail with a 500 at the error rate.
+ */
+public class PrdecertoServer {
+	
+	public static final String PATH = "/default.aspx";
+	private static final String LOGIN_PATH = "/login.aspx";
+	
+	private static final String EVENTTARGET = "__EVENTTARGET";
+	private static final String EVENTARGUMENT = "__EVENTARGUMENT";
+	private static final String VIEWSTATE = "__VIEWSTATE";
+	private static final String MENU_TARGET = "mnuHoofd";
+	private static final String MENU_REGISTRATIES = "registraties";
+	private static final String UTF_8 = "UTF-8";
+	
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final PrdecertoPages pages;
+	private final ConcurrentMap<String, Long> sessions = new ConcurrentHashMap<String, Long>();
+	
+	private long latencyMillis;
+	private long jitterMillis;
+	private double errorRate;
+	private int registrationsPerDay = 4;
+	private long sessionTimeoutMillis = Long.MAX_VALUE;
+	
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong logins = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+	
+	/**
+	 * @param port the port to listen on, 0 for any free port
+	 */
+	public PrdecertoServer(int port, int threads, PrdecertoPages pages) throws IOException {
+		this.pages = pages;
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("prdecerto"));
+		server.setExecutor(executor);
+		server.createContext(PATH, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		server.createContext(LOGIN_PATH, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, "<html><body><form id=\"login\">Aanmelden</form></body></html>");
+			}
+		});
+	}
+	
+	public void start() {
+		server.start();
+	}
+	
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+	
+	public String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + PATH;
+	}
+	
+	public void setLatency(long latencyMillis, long jitterMillis) {
+		this.latencyMillis = latencyMillis;
+		this.jitterMillis = jitterMillis;
+	}
+	
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+	
+	public void setRegistrationsPerDay(int registrationsPerDay) {
+		this.registrationsPerDay = registrationsPerDay;
+	}
+	
+	public void setSessionTimeoutMillis(long sessionTimeoutMillis) {
+		this.sessionTimeoutMillis = sessionTimeoutMillis;
+	}
+	
+	public long getRequests() {
+		return requests.get();
+	}
+	
+	public long getErrors() {
+		return errors.get();
+	}
+	
+	public long getLogins() {
+		return logins.get();
+	}
+	
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+	
+	private void serve(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try {
+			delay();
+			if ("GET".equals(exchange.getRequestMethod())){
+				String session = UUID.randomUUID().toString();
+				sessions.put(session, System.currentTimeMillis());
+				logins.incrementAndGet();
+				exchange.getResponseHeaders().add("Set-Cookie", PrdecertoPages.SESSION_COOKIE + "=" + session + "; path=/; HttpOnly");
+				exchange.getResponseHeaders().add("Set-Cookie", PrdecertoPages.AUTH_COOKIE + "=" + UUID.randomUUID() + "; path=/; HttpOnly");
+				respond(exchange, 200, pages.homePage());
+				return;
+			}
+			Map<String, String> form = form(exchange.getRequestBody());
+			if (!isLive(cookie(exchange, PrdecertoPages.SESSION_COOKIE))){
+				exchange.getResponseHeaders().add("Location", LOGIN_PATH);
+				respond(exchange, 302, "");
+				return;
+			}
+			if (!form.containsKey(VIEWSTATE)){
+				fail(exchange);
+				return;
+			}
+			String target = form.get(EVENTTARGET);
+			String argument = form.get(EVENTARGUMENT);
+			if (MENU_TARGET.equals(target) && MENU_REGISTRATIES.equals(argument)){
+				respond(exchange, 200, pages.registrationsPage(new LocalDate()));
+			} else if (PrdecertoPages.CALENDAR_TARGET.equals(target) && PrdecertoPages.isNavigationCode(argument)){
+				respond(exchange, 200, pages.registrationsPage(PrdecertoPages.fromCode(argument)));
+			} else if (PrdecertoPages.CALENDAR_TARGET.equals(target) && ThreadLocalRandom.current().nextDouble() >= errorRate){
+				respond(exchange, 200, pages.dayPage(PrdecertoPages.fromCode(argument), registrationsPerDay));
+			} else {
+				fail(exchange);
+			}
+		} catch (RuntimeException e) {
+			fail(exchange);
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	private boolean isLive(String session) {
+		if (session == null){
+			return false;
+		}
+		Long lastSeen = sessions.get(session);
+		long now = System.currentTimeMillis();
+		if (lastSeen == null || now - lastSeen > sessionTimeoutMillis){
+			sessions.remove(session);
+			return false;
+		}
+		sessions.put(session, now);
+		return true;
+	}
+	
+	private void delay() {
+		long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+		if (delay > 0){
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	private void fail(HttpExchange exchange) throws IOException {
+		errors.incrementAndGet();
+		respond(exchange, 500, "<html><body>Server Error in '/' Application.</body></html>");
+	}
+	
+	private void respond(HttpExchange exchange, int statusCode, String page) throws IOException {
+		byte[] body = page.getBytes(UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		exchange.sendResponseHeaders(statusCode, body.length == 0 ? -1 : body.length);
+		if (body.length > 0){
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+		bytesSent.addAndGet(body.length);
+	}
+	
+	private static String cookie(HttpExchange exchange, String name) {
+		List<String> headers = exchange.getRequestHeaders().get("Cookie");
+		if (headers == null){
+			return null;
+		}
+		for (String header : headers) {
+			for (String cookie : header.split(";")) {
+				String[] nameAndValue = cookie.trim().split("=", 2);
+				if (nameAndValue.length == 2 && name.equals(nameAndValue[0])){
+					return nameAndValue[1];
+				}
+			}
+		}
+		return null;
+	}
+	
+	private static Map<String, String> form(InputStream body) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+			bytes.write(buffer, 0, read);
+		}
+		Map<String, String> form = new HashMap<String, String>();
+		for (String field : bytes.toString(UTF_8).split("&")) {
+			int separator = field.indexOf('=');
+			if (separator > 0){
+				form.put(URLDecoder.decode(field.substring(0, separator), UTF_8), URLDecoder.decode(field.substring(separator + 1), UTF_8));
+			}
+		}
+		return form;
+	}
+
+}
@@ -0,0 +1,69 @@
+package be.nvdh.ts.fetcher;
+
+import java.nio.charset.Charset;
+
+/**
+ * An eline account: the sessions, cached days and results of one employee are kept apart by its id.
+ */
+public class Account {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	
+	private final String id;
+	private final String url;
+	
+	public Account(String id, String url) {
+		if (id == null || id.isEmpty()){
+			throw new IllegalArgumentException("An account needs an id");
+		}
+		this.id = id;
+		this.url = url;
+	}
+
+	public String getId() {
+		return id;
+	}
+	
+	/**
+	 * @return the id as a single file name: letters, digits, '-', '_' and '.' are kept, except for a leading '.',
+	 * every other character is percent-encoded in UTF-8, so ids like "../x" or "a/b" stay inside their directory
+	 */
+	public String getFileName() {
+		StringBuilder fileName = new StringBuilder(id.length());
+		for (byte b : id.getBytes(UTF_8)) {
+			char c = (char) (b & 0xFF);
+			if (isFileNameCharacter(c) && !(c == '.' && fileName.length() == 0)){
+				fileName.append(c);
+			} else {
+				fileName.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+			}
+		}
+		return fileName.toString();
+	}
+
+	public String getUrl() {
+		return url;
+	}
+	
+	public boolean equals(Object other) {
+		if (!(other instanceof Account)){
+			return false;
+		}
+		Account otherAccount = (Account) other;
+		return id.equals(otherAccount.id) && url.equals(otherAccount.url);
+	}
+	
+	public int hashCode() {
+		return 31 * id.hashCode() + url.hashCode();
+	}
+	
+	public String toString() {
+		return id;
+	}
+	
+	private static boolean isFileNameCharacter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.';
+	}
+
+}
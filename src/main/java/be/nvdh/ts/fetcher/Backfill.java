@@ -0,0 +1,182 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+
+import be.nvdh.ts.domain.FetchResult;
+
+/**
+ * Fetches months of history for many accounts into the caches and history of the given fetcher, on sessions of its own whose requests
+ * go through a {@link ThrottledTransport}: no more than backfillRequestsPerSecond in total and backfillConcurrencyPerServer at a time per server,
+ * slowing down when the average latency rises above backfillSlowdownMillis. Other fetches with that fetcher are not throttled.
+ * Only useful with a historyDir or cacheDir in the config of the fetcher, where the fetched days end up.
+ * <p>
+ * Every month that completes is appended to the checkpoint file, so a run that is interrupted resumes with the months that are left.
+ */
+public class Backfill {
+	
+	private static final String CONFIG_REQUESTS_PER_SECOND = "backfillRequestsPerSecond";
+	private static final String CONFIG_CONCURRENCY         = "backfillConcurrencyPerServer";
+	private static final String CONFIG_SLOWDOWN            = "backfillSlowdownMillis";
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String SEPARATOR = "\t";
+	
+	private final ElineFetcher fetcher;
+	private final RateLimiter rateLimiter;
+	private final int concurrencyPerServer;
+	private final File checkpointFile;
+	private volatile boolean stopped;
+	
+	/**
+	 * @param fetcher the initialized fetcher of the application, so that its caches and history are the ones filled
+	 * @param config the backfill settings
+	 */
+	public Backfill(ElineFetcher fetcher, Map<String, String> config, File checkpointFile) {
+		this.fetcher = fetcher;
+		double requestsPerSecond = config.containsKey(CONFIG_REQUESTS_PER_SECOND) ? Double.parseDouble(config.get(CONFIG_REQUESTS_PER_SECOND)) : 5;
+		long slowdownMillis = config.containsKey(CONFIG_SLOWDOWN) ? Long.parseLong(config.get(CONFIG_SLOWDOWN)) : 2000;
+		this.concurrencyPerServer = config.containsKey(CONFIG_CONCURRENCY) ? Integer.parseInt(config.get(CONFIG_CONCURRENCY)) : 4;
+		this.rateLimiter = new RateLimiter(requestsPerSecond, slowdownMillis);
+		this.checkpointFile = checkpointFile;
+	}
+	
+	/**
+	 * Runs the months of the jobs that are not checkpointed yet, one month per worker with as many workers as a server takes concurrent requests.
+	 * Months that have not ended yet are fetched up to today, but never checkpointed.
+	 */
+	public BackfillReport run(List<BackfillJob> jobs) throws IOException, InterruptedException {
+		stopped = false;
+		final BackfillReport report = new BackfillReport();
+		Set<String> checkpoints = readCheckpoints();
+		final SessionPool sessions = fetcher.createSessionPool(new ThrottledTransport(fetcher.getTransport(), rateLimiter, concurrencyPerServer));
+		ExecutorService workers = Executors.newFixedThreadPool(concurrencyPerServer, new DaemonThreadFactory("backfill"));
+		try {
+			final OutputStream checkpoint = new FileOutputStream(checkpointFile, true);
+			try {
+				for (final MonthOfAccount month : months(jobs)) {
+					if (checkpoints.contains(month.key())){
+						report.skipped();
+						continue;
+					}
+					workers.execute(new Runnable() {
+						public void run() {
+							if (!stopped){
+								backfill(month, sessions, report, checkpoint);
+							}
+						}
+					});
+				}
+				workers.shutdown();
+				while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+				}
+			} finally {
+				checkpoint.close();
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+		return report;
+	}
+	
+	/**
+	 * Lets the run finish the months in progress and skip the others.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+	
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+	
+	private void backfill(MonthOfAccount month, SessionPool sessions, BackfillReport report, OutputStream checkpoint) {
+		LocalDate today = new LocalDate();
+		LocalDate lastDay = month.month.plusMonths(1).minusDays(1);
+		try {
+			FetchResult result = fetcher.fetchRange(month.account, month.month, lastDay.isAfter(today) ? today : lastDay, sessions);
+			if (result instanceof PartialFetchResult){
+				report.partial();
+			} else if (lastDay.isBefore(today)){
+				checkpoint(checkpoint, month);
+				report.completed();
+			} else {
+				report.completed();
+			}
+		} catch (Exception e) {
+			report.failed(month.toString(), e);
+		}
+	}
+	
+	private void checkpoint(OutputStream checkpoint, MonthOfAccount month) throws IOException {
+		byte[] line = (month.key() + System.lineSeparator()).getBytes(UTF_8);
+		synchronized (checkpoint) {
+			checkpoint.write(line);
+			checkpoint.flush();
+		}
+	}
+	
+	private Set<String> readCheckpoints() throws IOException {
+		if (!checkpointFile.isFile()){
+			return Collections.emptySet();
+		}
+		return new HashSet<String>(Files.readAllLines(checkpointFile.toPath(), UTF_8));
+	}
+	
+	/**
+	 * Takes the months of all jobs in turns, so that the accounts are backfilled side by side.
+	 */
+	private List<MonthOfAccount> months(List<BackfillJob> jobs) {
+		List<MonthOfAccount> months = new ArrayList<MonthOfAccount>();
+		LocalDate thisMonth = new LocalDate().withDayOfMonth(1);
+		for (int offset = 0; ; offset++) {
+			boolean added = false;
+			for (BackfillJob job : jobs) {
+				LocalDate month = job.getFirstMonth().plusMonths(offset);
+				if (!month.isAfter(job.getLastMonth()) && !month.isAfter(thisMonth)){
+					months.add(new MonthOfAccount(job.getAccount(), month));
+					added = true;
+				}
+			}
+			if (!added){
+				return months;
+			}
+		}
+	}
+	
+	private static class MonthOfAccount {
+		
+		private final Account account;
+		private final LocalDate month;
+		
+		MonthOfAccount(Account account, LocalDate month) {
+			this.account = account;
+			this.month = month;
+		}
+		
+		String key() {
+			return account.getFileName() + SEPARATOR + month.toString("yyyy-MM");
+		}
+		
+		public String toString() {
+			return account.getId() + " " + month.toString("yyyy-MM");
+		}
+		
+	}
+
+}
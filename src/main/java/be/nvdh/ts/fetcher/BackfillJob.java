@@ -0,0 +1,36 @@
+package be.nvdh.ts.fetcher;
+
+import org.joda.time.LocalDate;
+
+/**
+ * The months of an account to backfill, from the month of the first date up to and including the month of the last.
+ */
+public class BackfillJob {
+	
+	private final Account account;
+	private final LocalDate firstMonth;
+	private final LocalDate lastMonth;
+	
+	public BackfillJob(Account account, LocalDate firstMonth, LocalDate lastMonth) {
+		this.account = account;
+		this.firstMonth = firstMonth.withDayOfMonth(1);
+		this.lastMonth = lastMonth.withDayOfMonth(1);
+	}
+	
+	public Account getAccount() {
+		return account;
+	}
+	
+	public LocalDate getFirstMonth() {
+		return firstMonth;
+	}
+	
+	public LocalDate getLastMonth() {
+		return lastMonth;
+	}
+	
+	public String toString() {
+		return account + " " + firstMonth + ".." + lastMonth;
+	}
+
+}
@@ -0,0 +1,69 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the months of a backfill run by outcome. Months that were partial or failed are not checkpointed and are tried again on the next run.
+ */
+public class BackfillReport {
+	
+	private final AtomicInteger completed = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger partial = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final List<String> failures = new ArrayList<String>();
+	
+	void completed() {
+		completed.incrementAndGet();
+	}
+	
+	void skipped() {
+		skipped.incrementAndGet();
+	}
+	
+	void partial() {
+		partial.incrementAndGet();
+	}
+	
+	void failed(String month, Throwable cause) {
+		failed.incrementAndGet();
+		synchronized (failures) {
+			failures.add(month + ": " + cause);
+		}
+	}
+	
+	public int getCompleted() {
+		return completed.get();
+	}
+	
+	/**
+	 * @return the months that were already checkpointed by an earlier run
+	 */
+	public int getSkipped() {
+		return skipped.get();
+	}
+	
+	public int getPartial() {
+		return partial.get();
+	}
+	
+	public int getFailed() {
+		return failed.get();
+	}
+	
+	/**
+	 * @return for every failed month, its account and month followed by the exception it failed with
+	 */
+	public List<String> getFailures() {
+		synchronized (failures) {
+			return new ArrayList<String>(failures);
+		}
+	}
+	
+	public String toString() {
+		return getCompleted() + " months completed, " + getSkipped() + " skipped, " + getPartial() + " partial, " + getFailed() + " failed";
+	}
+
+}
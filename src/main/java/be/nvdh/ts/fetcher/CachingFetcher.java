@@ -0,0 +1,203 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.LocalDate;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.exception.FetchException;
+import be.nvdh.ts.fetch.Fetcher;
+
+/**
+ * Serves the last result of a month from memory. Results older than the soft time to live are still returned but refreshed in the background;
+ * only results older than the hard time to live make the caller wait for a new fetch. A {@link PartialFetchResult} is refreshed on its next use.
+ * The least recently used months are dropped beyond the maximum number of entries.
+ * Fetches that were started before the last {@link #invalidate()} are not cached.
+ */
+public class CachingFetcher implements Fetcher {
+	
+	private static final String CONFIG_SOFT_TTL    = "resultSoftTtlSeconds";
+	private static final String CONFIG_HARD_TTL    = "resultHardTtlSeconds";
+	private static final String CONFIG_MAX_ENTRIES = "resultMaxEntries";
+	
+	private final Fetcher fetcher;
+	private final ExecutorService refresher;
+	
+	private long softTtlMillis = TimeUnit.MINUTES.toMillis(1);
+	private long hardTtlMillis = TimeUnit.MINUTES.toMillis(15);
+	private int maxEntries = 24;
+	
+	private final Map<LocalDate, CachedResult> results = new LinkedHashMap<LocalDate, CachedResult>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<LocalDate, CachedResult> eldest) {
+			return size() > maxEntries;
+		}
+	};
+	private long generation;
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong failedRefreshes = new AtomicLong();
+	
+	public CachingFetcher(Fetcher fetcher) {
+		this.fetcher = fetcher;
+		this.refresher = Executors.newFixedThreadPool(2, new DaemonThreadFactory(fetcher.getName() + "-refresh"));
+	}
+
+	public FetchResult fetch(Date dateToFetch) throws FetchException {
+		LocalDate month = new LocalDate(dateToFetch).withDayOfMonth(1);
+		CachedResult cachedResult = cachedResult(month);
+		long now = System.currentTimeMillis();
+		if (cachedResult == null || cachedResult.age(now) > hardTtlMillis){
+			misses.incrementAndGet();
+			return load(month, dateToFetch, generation());
+		}
+		hits.incrementAndGet();
+		if (cachedResult.age(now) > softTtlMillis || cachedResult.isPartial()){
+			refreshInBackground(month, dateToFetch, cachedResult);
+		}
+		return cachedResult.result;
+	}
+
+	public void init(Map<String, String> config) {
+		fetcher.init(config);
+		if (config.containsKey(CONFIG_SOFT_TTL)){
+			softTtlMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(config.get(CONFIG_SOFT_TTL)));
+		}
+		if (config.containsKey(CONFIG_HARD_TTL)){
+			hardTtlMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(config.get(CONFIG_HARD_TTL)));
+		}
+		if (config.containsKey(CONFIG_MAX_ENTRIES)){
+			maxEntries = Integer.parseInt(config.get(CONFIG_MAX_ENTRIES));
+		}
+		invalidate();
+	}
+
+	public String getName() {
+		return fetcher.getName();
+	}
+	
+	public void invalidate() {
+		synchronized (results) {
+			generation++;
+			results.clear();
+		}
+	}
+	
+	/**
+	 * Stops refreshing in the background; stale results are still served until they pass the hard time to live.
+	 */
+	public void close() {
+		refresher.shutdownNow();
+	}
+	
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return refresher.awaitTermination(timeout, unit);
+	}
+	
+	public int size() {
+		synchronized (results) {
+			return results.size();
+		}
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public long getRefreshes() {
+		return refreshes.get();
+	}
+	
+	public long getFailedRefreshes() {
+		return failedRefreshes.get();
+	}
+	
+	/**
+	 * @param loadGeneration the generation when the fetch was asked for, the result is dropped when the cache was invalidated since
+	 */
+	private FetchResult load(LocalDate month, Date dateToFetch, long loadGeneration) throws FetchException {
+		FetchResult result = fetcher.fetch(dateToFetch);
+		synchronized (results) {
+			if (generation == loadGeneration){
+				results.put(month, new CachedResult(result, System.currentTimeMillis()));
+			}
+		}
+		return result;
+	}
+	
+	private long generation() {
+		synchronized (results) {
+			return generation;
+		}
+	}
+	
+	private void refreshInBackground(final LocalDate month, final Date dateToFetch, final CachedResult staleResult) {
+		if (!staleResult.refreshing.compareAndSet(false, true)){
+			return;
+		}
+		final long loadGeneration = generation();
+		try {
+			refresher.execute(new Runnable() {
+				public void run() {
+					try {
+						load(month, dateToFetch, loadGeneration);
+					} catch (Exception e) {
+						failedRefreshes.incrementAndGet();
+						staleResult.refreshing.set(false);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			staleResult.refreshing.set(false);
+			return;
+		}
+		refreshes.incrementAndGet();
+	}
+	
+	private CachedResult cachedResult(LocalDate month) {
+		synchronized (results) {
+			return results.get(month);
+		}
+	}
+	
+	public String toString(){
+		return fetcher.toString();
+	}
+	
+	private static class CachedResult {
+		
+		private final FetchResult result;
+		private final long fetchedAt;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+		
+		CachedResult(FetchResult result, long fetchedAt) {
+			this.result = result;
+			this.fetchedAt = fetchedAt;
+		}
+		
+		long age(long now) {
+			return now - fetchedAt;
+		}
+		
+		boolean isPartial() {
+			return result instanceof PartialFetchResult && !((PartialFetchResult) result).isComplete();
+		}
+		
+	}
+
+}
@@ -0,0 +1,109 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * Maps the dates and months linked from an ASP.NET calendar to their postback arguments.
+ * The calendar identifies a day by the number of days since 1 January 2000, and prefixes it with a V to navigate to the month starting on that day.
+ */
+public class CalendarIndex {
+	
+	private static final LocalDate DAY_ZERO = new LocalDate(2000, 1, 1);
+	private static final String NAVIGATION_PREFIX = "V";
+	private static final Pattern POSTBACK_PATTERN = Pattern.compile("javascript:__doPostBack\\('(.*)','(.*)'\\)");
+	
+	private final Map<LocalDate, String> dayCodes = new HashMap<LocalDate, String>();
+	private final Map<LocalDate, String> navigationCodes = new HashMap<LocalDate, String>();
+	private LocalDate month;
+	
+	public static CalendarIndex build(Document page, String calendarTarget) {
+		CalendarIndex index = new CalendarIndex();
+		for (Element link : page.select("a[href^=javascript:__doPostBack]")) {
+			Matcher matcher = POSTBACK_PATTERN.matcher(link.attr("href"));
+			if (matcher.matches() && calendarTarget.equals(matcher.group(1))){
+				index.add(matcher.group(2));
+			}
+		}
+		index.month = index.displayedMonth();
+		return index;
+	}
+	
+	/**
+	 * @return the month shown by the calendar, or null when the page holds no calendar
+	 */
+	public LocalDate getMonth() {
+		return month;
+	}
+	
+	/**
+	 * @return the postback argument selecting the date, or null when the calendar does not link it
+	 */
+	public String getDayCode(LocalDate date) {
+		return dayCodes.get(date);
+	}
+	
+	/**
+	 * @return the postback argument of the navigation link that brings the calendar closest to the month, or null when there is none in that direction
+	 */
+	public String getNavigationCode(LocalDate targetMonth) {
+		String closestCode = null;
+		int closestDistance = Integer.MAX_VALUE;
+		for (Entry<LocalDate, String> navigation : navigationCodes.entrySet()) {
+			int distance = Math.abs(Days.daysBetween(navigation.getKey(), targetMonth).getDays());
+			if (distance < closestDistance){
+				closestDistance = distance;
+				closestCode = navigation.getValue();
+			}
+		}
+		return closestCode;
+	}
+	
+	private void add(String argument) {
+		if (argument.startsWith(NAVIGATION_PREFIX)){
+			LocalDate firstDay = toDate(argument.substring(NAVIGATION_PREFIX.length()));
+			if (firstDay != null){
+				navigationCodes.put(firstDay.withDayOfMonth(1), argument);
+			}
+		} else {
+			LocalDate date = toDate(argument);
+			if (date != null){
+				dayCodes.put(date, argument);
+			}
+		}
+	}
+	
+	private LocalDate displayedMonth() {
+		Map<LocalDate, Integer> daysPerMonth = new HashMap<LocalDate, Integer>();
+		LocalDate displayedMonth = null;
+		int mostDays = 0;
+		for (LocalDate date : dayCodes.keySet()) {
+			LocalDate firstDay = date.withDayOfMonth(1);
+			Integer days = daysPerMonth.get(firstDay);
+			days = days == null ? 1 : days + 1;
+			daysPerMonth.put(firstDay, days);
+			if (days > mostDays){
+				mostDays = days;
+				displayedMonth = firstDay;
+			}
+		}
+		return displayedMonth;
+	}
+	
+	private LocalDate toDate(String dayNumber) {
+		try {
+			return DAY_ZERO.plusDays(Integer.parseInt(dayNumber));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
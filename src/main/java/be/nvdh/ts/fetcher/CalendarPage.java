@@ -0,0 +1,34 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.UnsupportedEncodingException;
+
+import org.joda.time.LocalDate;
+import org.jsoup.nodes.Document;
+
+/**
+ * The calendar of one month on a registrations page, together with the form state to post back from it.
+ * The page itself is not kept.
+ */
+public class CalendarPage {
+	
+	private final CalendarIndex index;
+	private final FormState formState;
+	
+	public CalendarPage(Document document, String calendarTarget) throws UnsupportedEncodingException {
+		this.index = CalendarIndex.build(document, calendarTarget);
+		this.formState = FormState.capture(document);
+	}
+	
+	public FormState getFormState() {
+		return formState;
+	}
+	
+	public CalendarIndex getIndex() {
+		return index;
+	}
+	
+	public LocalDate getMonth() {
+		return index.getMonth();
+	}
+
+}
@@ -0,0 +1,59 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The cookies of one session, taken from Set-Cookie headers and sent back on every request regardless of path.
+ */
+public class CookieJar {
+	
+	private final Map<String, String> cookies = new LinkedHashMap<String, String>();
+	
+	public synchronized String get(String name) {
+		return cookies.get(name);
+	}
+	
+	public synchronized void put(String name, String value) {
+		cookies.put(name, value);
+	}
+	
+	public synchronized void store(List<String> setCookieHeaders) {
+		if (setCookieHeaders == null){
+			return;
+		}
+		for (String header : setCookieHeaders) {
+			String nameAndValue = StringUtils.substringBefore(header, ";");
+			String name = StringUtils.substringBefore(nameAndValue, "=").trim();
+			if (!name.isEmpty()){
+				cookies.put(name, StringUtils.substringAfter(nameAndValue, "=").trim());
+			}
+		}
+	}
+	
+	public synchronized void clear() {
+		cookies.clear();
+	}
+	
+	/**
+	 * @return the value for a Cookie request header, or null when the jar is empty
+	 */
+	public synchronized String toHeader() {
+		if (cookies.isEmpty()){
+			return null;
+		}
+		StringBuilder header = new StringBuilder();
+		for (Entry<String, String> cookie : cookies.entrySet()) {
+			if (header.length() > 0){
+				header.append("; ");
+			}
+			header.append(cookie.getKey()).append('=').append(cookie.getValue());
+		}
+		return header.toString();
+	}
+
+}
@@ -0,0 +1,21 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DaemonThreadFactory implements ThreadFactory {
+	
+	private final String name;
+	private final AtomicInteger threadNumber = new AtomicInteger();
+	
+	public DaemonThreadFactory(String name) {
+		this.name = name;
+	}
+
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
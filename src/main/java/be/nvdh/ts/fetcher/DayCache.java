@@ -0,0 +1,155 @@
+package be.nvdh.ts.fetcher;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+
+/**
+ * Durable store of parsed day pages, one properties file per month.
+ * A cache without directory is disabled: nothing is kept and every lookup misses.
+ */
+public class DayCache {
+	
+	private static final String FILE_EXTENSION   = ".days";
+	private static final String FIELD_SEPARATOR  = "|";
+	private static final String TIME_SEPARATOR   = ",";
+	private static final int 	NUMBER_OF_FIELDS = 5;
+
+	private final File directory;
+	private final Map<LocalDate, Properties> months = new HashMap<LocalDate, Properties>();
+	private final Set<LocalDate> dirtyMonths = new HashSet<LocalDate>();
+	
+	private DateTimeFormatter monthFormat = new DateTimeFormatterBuilder().appendYear(4, 4).appendLiteral("-").appendMonthOfYear(2).toFormatter();
+	private DateTimeFormatter timeFormat  = new DateTimeFormatterBuilder().appendHourOfDay(2).appendLiteral(":").appendMinuteOfHour(2).toFormatter();
+	
+	public DayCache(String directory) {
+		this.directory = StringUtils.isEmpty(directory) ? null : new File(directory);
+	}
+	
+	public boolean isEnabled() {
+		return directory != null;
+	}
+	
+	public synchronized DayRegistration get(LocalDate date) throws IOException {
+		if (!isEnabled()){
+			return null;
+		}
+		String value = month(date).getProperty(date.toString());
+		return value != null ? decode(date, value) : null;
+	}
+	
+	public synchronized void put(DayRegistration day) throws IOException {
+		if (!isEnabled()){
+			return;
+		}
+		month(day.getDate()).setProperty(day.getDate().toString(), encode(day));
+		dirtyMonths.add(firstDayOfMonth(day.getDate()));
+	}
+	
+	public synchronized void flush() throws IOException {
+		for (LocalDate month : dirtyMonths) {
+			store(month, months.get(month));
+		}
+		dirtyMonths.clear();
+	}
+	
+	private Properties month(LocalDate date) throws IOException {
+		LocalDate month = firstDayOfMonth(date);
+		Properties days = months.get(month);
+		if (days == null){
+			days = load(month);
+			months.put(month, days);
+		}
+		return days;
+	}
+	
+	private Properties load(LocalDate month) throws IOException {
+		Properties days = new Properties();
+		File file = monthFile(month);
+		if (file.exists()){
+			InputStream in = new FileInputStream(file);
+			try {
+				days.load(in);
+			} finally {
+				in.close();
+			}
+		}
+		return days;
+	}
+	
+	private void store(LocalDate month, Properties days) throws IOException {
+		if (!directory.exists() && !directory.mkdirs()){
+			throw new IOException("Unable to create cache directory " + directory);
+		}
+		File file = monthFile(month);
+		File tempFile = new File(directory, file.getName() + ".tmp");
+		OutputStream out = new FileOutputStream(tempFile);
+		try {
+			days.store(out, "eline days of " + monthFormat.print(month));
+		} finally {
+			out.close();
+		}
+		Files.move(tempFile.toPath(), file.toPath(), REPLACE_EXISTING);
+	}
+	
+	private String encode(DayRegistration day) {
+		return encodeTimes(day.getTickTimes()) + FIELD_SEPARATOR 
+				+ encodeTimes(day.getManualRegistrations()) + FIELD_SEPARATOR 
+				+ day.getRawDayCode() + FIELD_SEPARATOR 
+				+ day.getTotalDuration().getMillis() + FIELD_SEPARATOR 
+				+ day.getIrregularities();
+	}
+	
+	private DayRegistration decode(LocalDate date, String value) throws IOException {
+		String[] fields = StringUtils.splitPreserveAllTokens(value, FIELD_SEPARATOR, NUMBER_OF_FIELDS);
+		if (fields.length != NUMBER_OF_FIELDS){
+			throw new IOException("Corrupt cache entry for " + date + ": " + value);
+		}
+		return new DayRegistration(date, decodeTimes(fields[0]), decodeTimes(fields[1]), fields[2], fields[4], new Duration(Long.parseLong(fields[3])));
+	}
+	
+	private String encodeTimes(List<LocalTime> times) {
+		List<String> formattedTimes = new ArrayList<String>();
+		for (LocalTime time : times) {
+			formattedTimes.add(timeFormat.print(time));
+		}
+		return StringUtils.join(formattedTimes, TIME_SEPARATOR);
+	}
+	
+	private List<LocalTime> decodeTimes(String value) {
+		List<LocalTime> times = new ArrayList<LocalTime>();
+		for (String time : StringUtils.split(value, TIME_SEPARATOR)) {
+			times.add(LocalTime.parse(time, timeFormat));
+		}
+		return times;
+	}
+	
+	private File monthFile(LocalDate month) {
+		return new File(directory, monthFormat.print(month) + FILE_EXTENSION);
+	}
+	
+	private LocalDate firstDayOfMonth(LocalDate date) {
+		return date.withDayOfMonth(1);
+	}
+
+}
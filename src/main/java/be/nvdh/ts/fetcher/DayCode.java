@@ -15,12 +15,16 @@ public enum DayCode {
 	
 	public static DayCode fromRawCode(String rawCode){
 		for (DayCode dayCode : DayCode.values()) {
-			if (dayCode.getRawCode().equals(rawCode))
+			if (dayCode.getRawCode().equalsIgnoreCase(rawCode))
 				return dayCode;
 		}
 		return DayCode.UNKNOWN;
 	}
 	
+	public boolean isHoliday() {
+		return this == HOLIDAY || this == CAO;
+	}
+	
 	public String getRawCode() {
 		return rawCode;
 	};
@@ -0,0 +1,107 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+import org.joda.time.format.PeriodFormatter;
+import org.joda.time.format.PeriodFormatterBuilder;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * Collects everything we need from a day page in a single pass over the registraties_* elements.
+ * Grid rows are recognised by the prefix of their grid and the suffix of their field, so there is no limit on the number of rows.
+ * The ids and texts of the wanted elements are kept as fragments, so the page can be replayed through a new extractor.
+ */
+public class DayPageExtractor {
+	
+	public static final String ID_PREFIX = "registraties_";
+	
+	private static final String TOTAAL_GEPRESTEERD 	= "registraties_lblTotaalGepresteerd";
+	private static final String GRID_TICKS 			= "registraties_dgrRegistraties__ctl";
+	private static final String GRID_MANUAL 		= "registraties_dgrRgAanvragen__ctl";
+	private static final String GRID_PLANNING 		= "registraties_dgrPlanningen__ctl";
+	private static final String GRID_IRREGULARITIES = "registraties_dgrOnregelmatigheden__ctl";
+	private static final String FIELD_TICK 			= "_lblRegistratieTijd";
+	private static final String FIELD_MANUAL 		= "_lblRgaTijdstip";
+	private static final String FIELD_DAYCODE 		= "_lblCode";
+	private static final String FIELD_IRREGULARITY 	= "_EmLabel2";
+	
+	private static final DateTimeFormatter REGISTRATION_TIME_FORMAT = new DateTimeFormatterBuilder().appendHourOfDay(2).appendLiteral(":").appendMinuteOfHour(2).toFormatter();
+	private static final PeriodFormatter PERIOD_FORMAT = new PeriodFormatterBuilder().appendHours().appendSuffix("u").appendMinutes().toFormatter();
+	
+	private List<LocalTime> tickTimes = new ArrayList<LocalTime>();
+	private List<LocalTime> manualRegistrations = new ArrayList<LocalTime>();
+	private String rawDayCode;
+	private String irregularities;
+	private String totalPrestation;
+	private List<String> fragments = new ArrayList<String>();
+	
+	public static DayRegistration extract(Document datePage, LocalDate date) throws IOException {
+		DayPageExtractor extractor = new DayPageExtractor();
+		for (Element element : datePage.select("[id^=" + ID_PREFIX + "]")) {
+			extractor.accept(element.id(), element.text());
+		}
+		return extractor.toDayRegistration(date);
+	}
+	
+	public boolean wants(String id) {
+		if (id.startsWith(GRID_TICKS)){
+			return id.endsWith(FIELD_TICK);
+		} else if (id.startsWith(GRID_MANUAL)){
+			return id.endsWith(FIELD_MANUAL);
+		} else if (id.startsWith(GRID_PLANNING)){
+			return id.endsWith(FIELD_DAYCODE);
+		} else if (id.startsWith(GRID_IRREGULARITIES)){
+			return id.endsWith(FIELD_IRREGULARITY);
+		}
+		return id.equals(TOTAAL_GEPRESTEERD);
+	}
+	
+	public void accept(String id, String text) {
+		if (wants(id)){
+			fragments.add(id);
+			fragments.add(text);
+		}
+		if (id.startsWith(GRID_TICKS)){
+			addRegistration(tickTimes, id, FIELD_TICK, text);
+		} else if (id.startsWith(GRID_MANUAL)){
+			addRegistration(manualRegistrations, id, FIELD_MANUAL, text);
+		} else if (id.startsWith(GRID_PLANNING)){
+			if (rawDayCode == null && id.endsWith(FIELD_DAYCODE)){
+				rawDayCode = text;
+			}
+		} else if (id.startsWith(GRID_IRREGULARITIES)){
+			if (irregularities == null && id.endsWith(FIELD_IRREGULARITY)){
+				irregularities = text;
+			}
+		} else if (id.equals(TOTAAL_GEPRESTEERD)){
+			totalPrestation = text;
+		}
+	}
+	
+	public DayRegistration toDayRegistration(LocalDate date) throws IOException {
+		if (totalPrestation == null){
+			throw new IOException("No total prestation found on the page of " + date);
+		}
+		Duration totalDuration = PERIOD_FORMAT.parsePeriod(totalPrestation).toStandardDuration();
+		return new DayRegistration(date, tickTimes, manualRegistrations, 
+				rawDayCode != null ? rawDayCode : DayCode.UNKNOWN.getRawCode(), 
+				irregularities != null ? irregularities : "", 
+				totalDuration, fragments);
+	}
+	
+	private void addRegistration(List<LocalTime> registrations, String id, String field, String text) {
+		if (id.endsWith(field) && !StringUtils.isBlank(text)){
+			registrations.add(LocalTime.parse(text.trim(), REGISTRATION_TIME_FORMAT));
+		}
+	}
+
+}
@@ -0,0 +1,312 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jsoup.parser.Parser;
+
+/**
+ * Reads a day page as a stream of tags without building a DOM.
+ * Only the hidden form fields and the text of the registraties_* elements wanted by the {@link DayPageExtractor} are kept; 
+ * of the __VIEWSTATE field only its length is recorded.
+ */
+public class DayPageScanner {
+	
+	private static final String VIEWSTATE = "__VIEWSTATE";
+	private static final int BUFFER_SIZE = 8192;
+	
+	private final DayPageExtractor extractor;
+	private final Map<String, String> hiddenFields = new HashMap<String, String>();
+	private int viewStateLength = -1;
+	
+	private Reader reader;
+	private char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	
+	private String captureId;
+	private String captureTag;
+	private int captureDepth;
+	private StringBuilder text = new StringBuilder();
+	
+	private String attributeId;
+	private String attributeName;
+	private String attributeType;
+	private String attributeValue;
+	private int attributeValueLength;
+	private boolean selfClosing;
+	
+	public DayPageScanner(DayPageExtractor extractor) {
+		this.extractor = extractor;
+	}
+	
+	public void scan(Reader reader) throws IOException {
+		this.reader = reader;
+		int c;
+		while ((c = read()) != -1) {
+			if (c == '<'){
+				tag();
+			} else if (isCapturing()){
+				text.append((char) c);
+			}
+		}
+	}
+	
+	public DayPageExtractor getExtractor() {
+		return extractor;
+	}
+	
+	public Map<String, String> getHiddenFields() {
+		return hiddenFields;
+	}
+	
+	public boolean hasViewState() {
+		return viewStateLength >= 0;
+	}
+	
+	public int getViewStateLength() {
+		return viewStateLength;
+	}
+	
+	private void tag() throws IOException {
+		int c = read();
+		if (c == '!'){
+			skipDeclaration();
+		} else if (c == '/'){
+			String name = readName(read());
+			skipUntil('>');
+			endTag(name);
+		} else if (Character.isLetter(c)){
+			String name = readName(c);
+			readAttributes();
+			startTag(name);
+		} else {
+			if (isCapturing()){
+				text.append('<');
+			}
+			unread(c);
+		}
+	}
+	
+	private void startTag(String name) throws IOException {
+		if ("input".equals(name)){
+			hiddenField();
+		} else if ("script".equals(name) || "style".equals(name)){
+			skipRawText(name);
+		} else if (isCapturing()){
+			if (name.equals(captureTag) && !selfClosing){
+				captureDepth++;
+			} else if ("br".equals(name)){
+				text.append(' ');
+			}
+		} else if (attributeId != null && !selfClosing && !isVoidElement(name) && extractor.wants(attributeId)){
+			captureId = attributeId;
+			captureTag = name;
+			captureDepth = 1;
+			text.setLength(0);
+		}
+	}
+	
+	private void endTag(String name) {
+		if (isCapturing() && name.equals(captureTag) && --captureDepth == 0){
+			extractor.accept(captureId, normalize(Parser.unescapeEntities(text.toString(), false)));
+			captureId = null;
+			captureTag = null;
+		}
+	}
+	
+	private void hiddenField() {
+		String fieldName = attributeId != null ? attributeId : attributeName;
+		if (fieldName == null || !"hidden".equalsIgnoreCase(attributeType)){
+			return;
+		}
+		if (VIEWSTATE.equals(fieldName)){
+			viewStateLength = attributeValueLength;
+		} else {
+			hiddenFields.put(fieldName, attributeValue != null ? Parser.unescapeEntities(attributeValue, true) : "");
+		}
+	}
+	
+	private void readAttributes() throws IOException {
+		attributeId = null;
+		attributeName = null;
+		attributeType = null;
+		attributeValue = null;
+		attributeValueLength = 0;
+		selfClosing = false;
+		while (true) {
+			int c = skipWhitespace();
+			if (c == -1 || c == '>'){
+				return;
+			} else if (c == '/'){
+				selfClosing = true;
+			} else {
+				selfClosing = false;
+				String name = readAttributeName(c);
+				c = skipWhitespace();
+				if (c == '='){
+					boolean keep = !"value".equals(name) || !VIEWSTATE.equals(attributeId != null ? attributeId : attributeName);
+					String value = readAttributeValue(skipWhitespace(), keep);
+					assignAttribute(name, value);
+				} else {
+					unread(c);
+				}
+			}
+		}
+	}
+	
+	private void assignAttribute(String name, String value) {
+		if ("id".equals(name)){
+			attributeId = value;
+		} else if ("name".equals(name)){
+			attributeName = value;
+		} else if ("type".equals(name)){
+			attributeType = value;
+		} else if ("value".equals(name)){
+			attributeValue = value;
+		}
+	}
+	
+	private String readAttributeName(int first) throws IOException {
+		StringBuilder name = new StringBuilder();
+		int c = first;
+		while (c != -1 && c != '=' && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+			name.append(Character.toLowerCase((char) c));
+			c = read();
+		}
+		unread(c);
+		return name.toString();
+	}
+	
+	/**
+	 * @return the value, or null when it is not kept; its length is always recorded
+	 */
+	private String readAttributeValue(int first, boolean keep) throws IOException {
+		StringBuilder value = keep ? new StringBuilder() : null;
+		int length = 0;
+		int c;
+		if (first == '"' || first == '\''){
+			while ((c = read()) != -1 && c != first) {
+				length++;
+				if (keep){
+					value.append((char) c);
+				}
+			}
+		} else {
+			c = first;
+			while (c != -1 && c != '>' && !Character.isWhitespace(c)) {
+				length++;
+				if (keep){
+					value.append((char) c);
+				}
+				c = read();
+			}
+			unread(c);
+		}
+		attributeValueLength = length;
+		return keep ? value.toString() : null;
+	}
+	
+	private String readName(int first) throws IOException {
+		StringBuilder name = new StringBuilder();
+		int c = first;
+		while (c != -1 && (Character.isLetterOrDigit(c) || c == '-' || c == ':')) {
+			name.append(Character.toLowerCase((char) c));
+			c = read();
+		}
+		unread(c);
+		return name.toString();
+	}
+	
+	private void skipDeclaration() throws IOException {
+		int c = read();
+		if (c == '-' && read() == '-'){
+			int dashes = 0;
+			while ((c = read()) != -1) {
+				if (c == '>' && dashes >= 2){
+					return;
+				}
+				dashes = c == '-' ? dashes + 1 : 0;
+			}
+		} else {
+			unread(c);
+			skipUntil('>');
+		}
+	}
+	
+	private void skipRawText(String tagName) throws IOException {
+		String endTag = "</" + tagName;
+		int matched = 0;
+		int c;
+		while ((c = read()) != -1) {
+			if (Character.toLowerCase((char) c) == endTag.charAt(matched)){
+				if (++matched == endTag.length()){
+					skipUntil('>');
+					return;
+				}
+			} else {
+				matched = c == '<' ? 1 : 0;
+			}
+		}
+	}
+	
+	private void skipUntil(char end) throws IOException {
+		int c;
+		while ((c = read()) != -1 && c != end) {
+		}
+	}
+	
+	private int skipWhitespace() throws IOException {
+		int c;
+		while ((c = read()) != -1 && Character.isWhitespace(c)) {
+		}
+		return c;
+	}
+	
+	private String normalize(String value) {
+		StringBuilder normalized = new StringBuilder(value.length());
+		boolean pendingSpace = false;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (Character.isWhitespace(c) || c == '\u00a0'){
+				pendingSpace = normalized.length() > 0;
+			} else {
+				if (pendingSpace){
+					normalized.append(' ');
+					pendingSpace = false;
+				}
+				normalized.append(c);
+			}
+		}
+		return normalized.toString();
+	}
+	
+	private boolean isCapturing() {
+		return captureId != null;
+	}
+	
+	private boolean isVoidElement(String name) {
+		return "br".equals(name) || "img".equals(name) || "hr".equals(name) || "meta".equals(name) || "link".equals(name);
+	}
+	
+	private int read() throws IOException {
+		if (position == limit){
+			limit = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0){
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++];
+	}
+	
+	private void unread(int c) {
+		if (c != -1){
+			position--;
+		}
+	}
+
+}
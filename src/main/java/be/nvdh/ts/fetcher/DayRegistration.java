@@ -0,0 +1,64 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.List;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+public class DayRegistration {
+	
+	private LocalDate date;
+	private List<LocalTime> tickTimes;
+	private List<LocalTime> manualRegistrations;
+	private String rawDayCode;
+	private String irregularities;
+	private Duration totalDuration;
+	private List<String> fragments;
+	
+	public DayRegistration(LocalDate date, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations, String rawDayCode, String irregularities, Duration totalDuration) {
+		this(date, tickTimes, manualRegistrations, rawDayCode, irregularities, totalDuration, null);
+	}
+	
+	DayRegistration(LocalDate date, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations, String rawDayCode, String irregularities, Duration totalDuration, List<String> fragments) {
+		this.date = date;
+		this.tickTimes = tickTimes;
+		this.manualRegistrations = manualRegistrations;
+		this.rawDayCode = rawDayCode;
+		this.irregularities = irregularities;
+		this.totalDuration = totalDuration;
+		this.fragments = fragments;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public List<LocalTime> getTickTimes() {
+		return tickTimes;
+	}
+
+	public List<LocalTime> getManualRegistrations() {
+		return manualRegistrations;
+	}
+
+	public String getRawDayCode() {
+		return rawDayCode;
+	}
+
+	public String getIrregularities() {
+		return irregularities;
+	}
+
+	public Duration getTotalDuration() {
+		return totalDuration;
+	}
+
+	/**
+	 * @return the ids and texts, one after the other, the day was extracted from, or null when it was not extracted from a page
+	 */
+	List<String> getFragments() {
+		return fragments;
+	}
+
+}
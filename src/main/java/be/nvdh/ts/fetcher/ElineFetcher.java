@@ -1,19 +1,37 @@
 package be.nvdh.ts.fetcher;
 
 import static org.joda.time.Duration.ZERO;
-import static org.joda.time.LocalTime.MIDNIGHT;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import javax.management.JMException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
@@ -22,16 +40,7 @@ import org.joda.time.Duration;
 import org.joda.time.Interval;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.DateTimeFormatterBuilder;
-import org.joda.time.format.PeriodFormatter;
-import org.joda.time.format.PeriodFormatterBuilder;
-import org.jsoup.Connection.Method;
-import org.jsoup.Connection.Response;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 
 import be.nvdh.ts.domain.FetchResult;
 import be.nvdh.ts.domain.Prestation;
@@ -44,26 +53,32 @@ public class ElineFetcher implements Fetcher{
 	private static final String FETCHER_CONFIG_URL		= "url";
 	private static final String FETCHER_MINUTES_PER_DAY = "minutesPerDay";
 	private static final String FETCHER_MINUTES_LUNCH	= "minutesLunch";
+	private static final String FETCHER_CACHE_DIR		= "cacheDir";
+	private static final String FETCHER_OPEN_DAYS		= "openDays";
+	private static final String FETCHER_FUTURE_DAYS_TTL	= "futureDaysTtlMinutes";
+	private static final String FETCHER_CONCURRENCY		= "concurrency";
+	private static final String FETCHER_STREAMING		= "streamingParser";
+	private static final String FETCHER_MAX_SESSIONS	= "maxSessions";
+	private static final String FETCHER_SESSION_IDLE	= "sessionIdleMinutes";
+	private static final String FETCHER_COALESCE		= "coalesceMillis";
+	private static final String FETCHER_DAY_RETRIES		= "dayRetries";
+	private static final String FETCHER_RETRY_BACKOFF	= "retryBackoffMillis";
+	private static final String FETCHER_HEDGE			= "hedgePercentile";
+	private static final String FETCHER_METRICS			= "metrics";
+	private static final String FETCHER_HISTORY_DIR		= "historyDir";
+	private static final String FETCHER_ARCHIVE_DIR		= "archiveDir";
+	private static final String FETCHER_ARCHIVE_MODE	= "archiveMode";
 	
-	private static final String EVENTARGUMENT    = "__EVENTARGUMENT";
-	private static final String EVENTTARGET      = "__EVENTTARGET";
-	private static final String EVENTVALIDATION  = "__EVENTVALIDATION";
-	private static final String VIEWSTATE        = "__VIEWSTATE";
+	private static final String HISTORY_EXTENSION = ".history";
 	
-	private static final String COOKIE_AUTHDEF   = ".AUTHDEF";
-	private static final String COOKIE_SESSIONID = "ASP.NET_SessionId";
-
-	private static final String REGISTRATIES_CAL_THIS_MONTH = "registraties$CalThisMonth";
+	private static final String METRICS_NONE = "none";
 	
-	private static final String REGISTRATIES_TOTAAL_GEPRESTEERD = "#registraties_lblTotaalGepresteerd";
-	private static final String REGISTRATIES_TICK 				= "#registraties_dgrRegistraties__ctl%d_lblRegistratieTijd";
-	private static final String REGISTRATIES_MANUEEL			= "#registraties_dgrRgAanvragen__ctl%d_lblRgaTijdstip";
-	private static final String REGISTRATIES_DAYCODE 			= "#registraties_dgrPlanningen__ctl2_lblCode";
-	private static final String REGISTRATIES_IRREGULARTIES 		= "#registraties_dgrOnregelmatigheden__ctl2_EmLabel2";
+	private static final String ARCHIVE_RECORD = "record";
+	private static final String ARCHIVE_REPLAY = "replay";
+	
+	private static final long MAX_RETRY_BACKOFF_MILLIS = 4000;
+	private static final int DAY_LATENCY_SAMPLES = 256;
 	
-	private static final int TIMEOUT = 10000;
-	private static final int MAX_REGISTRATIONS = 10;
-
 	private static final LocalTime MIDDAY_BOUNDARY = new LocalTime(14, 00);
 	
 	LocalTime startLunchTime = new LocalTime(12, 0, 0);
@@ -71,439 +86,979 @@ public class ElineFetcher implements Fetcher{
 	
 	private int minutesPerDay = 8*60;
 	private int minutesLunch = 30;
+	private int openDays = 1;
+	private int futureDaysTtlMinutes = 15;
+	private int concurrency = 1;
+	private boolean streamingParser = true;
+	private int maxSessions = 50;
+	private int sessionIdleMinutes = 20;
+	private FetchCoalescer coalescer = new FetchCoalescer(0);
+	private RetryPolicy retryPolicy = new RetryPolicy(2, 250, MAX_RETRY_BACKOFF_MILLIS);
+	private double hedgePercentile = 0;
+	private final LatencyTracker dayLatencies = new LatencyTracker(DAY_LATENCY_SAMPLES);
+	
+	private String cacheDir;
+	private final ConcurrentMap<Account, DayCache> dayCaches = new ConcurrentHashMap<Account, DayCache>();
+	private FutureDayCache futureDays = new FutureDayCache(TimeUnit.MINUTES.toMillis(futureDaysTtlMinutes));
+	private String historyDir;
+	private final Map<Account, HistoryStore> historyStores = new HashMap<Account, HistoryStore>();
+	private String archiveDir;
+	private String archiveMode;
+	private final ConcurrentMap<Account, ResponseArchive> archives = new ConcurrentHashMap<Account, ResponseArchive>();
+	private TimesheetKernel kernel = createKernel();
 	
 	private String baseUrl = "http://prdecerto/default.aspx";
-	private Pattern pagePattern = Pattern.compile("javascript:__doPostBack\\('(.*)','(.*)'\\)");
-	private Locale localeBE = new Locale("nl", "BE");
-	private DateTimeFormatter dateTimeFormat  = DateTimeFormat.forPattern("dd MMMM").withLocale(localeBE);
-	private DateTimeFormatter registrionDateTimeFormat  = new DateTimeFormatterBuilder().appendHourOfDay(2).appendLiteral(":").appendMinuteOfHour(2).toFormatter();
-	private PeriodFormatter periodFormat = new PeriodFormatterBuilder().appendHours().appendSuffix("u").appendMinutes().toFormatter();
-	
-	private String sessionIdCookie;
-	private String authdefCookie;
+	
+	private Account defaultAccount = new Account(FETCHER_SHORT_NAME, baseUrl);
+	
+	private volatile HttpTransport transport = new UrlConnectionTransport();
+	private FetchMetrics metrics = FetchMetrics.DISABLED;
+	private JmxFetchMetrics registeredMetrics;
+	private volatile SessionPool sessionPool = createSessionPool();
+	
+	private final ExecutorService asyncExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory(FETCHER_SHORT_NAME + "-async"));
+	private final ExecutorService hedgeExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory(FETCHER_SHORT_NAME + "-hedge"));
+	private final ScheduledExecutorService deadlines = createDeadlines();
 
 	public FetchResult fetch(Date dateToFetch) throws FetchException {
+		return fetch(defaultAccount, dateToFetch);
+	}
+	
+	/**
+	 * Concurrent fetches of the same day for the same account share one scrape and its result; the result tells the day that was asked for,
+	 * so fetches of other days in the month do not share it.
+	 */
+	public FetchResult fetch(final Account account, Date dateToFetch) throws FetchException {
+		final LocalDate date = new LocalDate(dateToFetch);
+		return coalescer.fetch(Arrays.asList(account, date), new Callable<FetchResult>() {
+			public FetchResult call() throws IOException {
+				return fetchData(account, sessionPool, getDaysInMonth(date), date, FetchContext.unbounded());
+			}
+		});
+	}
+	
+	public CompletableFuture<FetchResult> fetchAsync(Date dateToFetch, long timeoutMillis) {
+		return fetchAsync(defaultAccount, dateToFetch, timeoutMillis);
+	}
+	
+	/**
+	 * Fetches the month in the background within one deadline for all its requests.
+	 * When the deadline passes, or the returned future gets cancelled, the requests in flight are aborted; a deadline that passes
+	 * also interrupts the fetch.
+	 * The future then completes with a {@link FetchException} or a {@link CancellationException}.
+	 */
+	public CompletableFuture<FetchResult> fetchAsync(final Account account, Date dateToFetch, long timeoutMillis) {
+		final LocalDate date = new LocalDate(dateToFetch);
+		final FetchContext context = FetchContext.withTimeout(timeoutMillis);
+		final CompletableFuture<FetchResult> future = new CompletableFuture<FetchResult>();
+		final Future<?> task = asyncExecutor.submit(new Runnable() {
+			public void run() {
+				try {
+					future.complete(fetchData(account, sessionPool, getDaysInMonth(date), date, context));
+				} catch (IOException e) {
+					future.completeExceptionally(new FetchException(e));
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
+				}
+			}
+		});
+		final ScheduledFuture<?> deadline = deadlines.schedule(new Runnable() {
+			public void run() {
+				if (future.completeExceptionally(new FetchException(new TimeoutException("No result for " + date + " within the deadline")))){
+					task.cancel(true);
+				}
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		future.whenComplete(new BiConsumer<FetchResult, Throwable>() {
+			public void accept(FetchResult result, Throwable failure) {
+				context.cancel();
+				deadline.cancel(false);
+			}
+		});
+		return future;
+	}
+	
+	public FetchResult fetchRange(LocalDate from, LocalDate to) throws FetchException {
+		return fetchRange(defaultAccount, from, to);
+	}
+	
+	public FetchResult fetchRange(Account account, LocalDate from, LocalDate to) throws FetchException {
+		return fetchRange(account, from, to, sessionPool);
+	}
+	
+	/**
+	 * Fetches the range on sessions of the given pool, so that its requests go through another transport than those of the fetcher,
+	 * while the caches, history and archive are the ones of the fetcher.
+	 */
+	FetchResult fetchRange(Account account, LocalDate from, LocalDate to, SessionPool sessions) throws FetchException {
 		try {
-			Document homepage = fetchHomePage();
-			Document registrationsPage = fetchRegistrationsPage(homepage);
-			return fetchData(registrationsPage, new LocalDate(dateToFetch));
+			return fetchData(account, sessions, getDaysBetween(from, to), from, FetchContext.unbounded());
 		} catch (IOException e) {
 			throw new FetchException(e);
 		}
 	}
-	
+
+	public CompletableFuture<Void> fetchStreaming(LocalDate from, LocalDate to, PrestationListener listener) {
+		return fetchStreaming(defaultAccount, from, to, listener);
+	}
+
+	/**
+	 * Fetches the range in the background and hands every day to the listener as soon as it and all days before it are parsed,
+	 * followed by the totals. Nothing but the totals is kept, so long ranges take no more memory than short ones.
+	 * Cancelling the returned future aborts the requests in flight.
+	 */
+	public CompletableFuture<Void> fetchStreaming(final Account account, final LocalDate from, final LocalDate to, final PrestationListener listener) {
+		final FetchContext context = FetchContext.unbounded();
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		future.whenComplete(new BiConsumer<Void, Throwable>() {
+			public void accept(Void result, Throwable failure) {
+				context.cancel();
+			}
+		});
+		asyncExecutor.execute(new Runnable() {
+			public void run() {
+				try {
+					List<LocalDate> dates = getDaysBetween(from, to);
+					streamData(account, dates, new PrestationStream(from, dates.size(), listener), context);
+					future.complete(null);
+				} catch (IOException e) {
+					FetchException failure = new FetchException(e);
+					listener.fetchFailed(failure);
+					future.completeExceptionally(failure);
+				} catch (RuntimeException e) {
+					listener.fetchFailed(new FetchException(e));
+					future.completeExceptionally(e);
+				}
+			}
+		});
+		return future;
+	}
+
 	public void init(Map<String, String> config) {
 		baseUrl = config.get(FETCHER_CONFIG_URL);
+		defaultAccount = new Account(FETCHER_SHORT_NAME, baseUrl);
 		minutesPerDay = Integer.parseInt(config.get(FETCHER_MINUTES_PER_DAY));
 		minutesLunch = Integer.parseInt(config.get(FETCHER_MINUTES_LUNCH));
+		kernel = createKernel();
+		if (config.containsKey(FETCHER_OPEN_DAYS)){
+			openDays = Integer.parseInt(config.get(FETCHER_OPEN_DAYS));
+		}
+		if (config.containsKey(FETCHER_FUTURE_DAYS_TTL)){
+			futureDaysTtlMinutes = Integer.parseInt(config.get(FETCHER_FUTURE_DAYS_TTL));
+		}
+		if (config.containsKey(FETCHER_CONCURRENCY)){
+			concurrency = Integer.parseInt(config.get(FETCHER_CONCURRENCY));
+		}
+		if (config.containsKey(FETCHER_STREAMING)){
+			streamingParser = Boolean.parseBoolean(config.get(FETCHER_STREAMING));
+		}
+		if (config.containsKey(FETCHER_MAX_SESSIONS)){
+			maxSessions = Integer.parseInt(config.get(FETCHER_MAX_SESSIONS));
+		}
+		if (config.containsKey(FETCHER_SESSION_IDLE)){
+			sessionIdleMinutes = Integer.parseInt(config.get(FETCHER_SESSION_IDLE));
+		}
+		if (config.containsKey(FETCHER_COALESCE)){
+			coalescer = new FetchCoalescer(Long.parseLong(config.get(FETCHER_COALESCE)));
+		}
+		if (config.containsKey(FETCHER_DAY_RETRIES) || config.containsKey(FETCHER_RETRY_BACKOFF)){
+			int dayRetries = config.containsKey(FETCHER_DAY_RETRIES) ? Integer.parseInt(config.get(FETCHER_DAY_RETRIES)) : retryPolicy.getMaxRetries();
+			long retryBackoff = config.containsKey(FETCHER_RETRY_BACKOFF) ? Long.parseLong(config.get(FETCHER_RETRY_BACKOFF)) : 250;
+			retryPolicy = new RetryPolicy(dayRetries, retryBackoff, MAX_RETRY_BACKOFF_MILLIS);
+		}
+		if (config.containsKey(FETCHER_HEDGE)){
+			hedgePercentile = Double.parseDouble(config.get(FETCHER_HEDGE));
+		}
+		if (METRICS_NONE.equalsIgnoreCase(config.get(FETCHER_METRICS))){
+			unregisterJmxMetrics();
+			metrics = FetchMetrics.DISABLED;
+		} else if (metrics == FetchMetrics.DISABLED){
+			metrics = registerJmxMetrics();
+		}
+		sessionPool = createSessionPool();
+		cacheDir = config.get(FETCHER_CACHE_DIR);
+		dayCaches.clear();
+		futureDays = new FutureDayCache(TimeUnit.MINUTES.toMillis(futureDaysTtlMinutes));
+		closeHistoryStores();
+		historyDir = config.get(FETCHER_HISTORY_DIR);
+		archiveDir = config.get(FETCHER_ARCHIVE_DIR);
+		archiveMode = config.get(FETCHER_ARCHIVE_MODE);
+		archives.clear();
 	}
 	
-	private FetchResult fetchData(Document registrationsPage, LocalDate dateToFetch) throws IOException {
-
-		List<Prestation> prestations = new ArrayList<Prestation>();
-
-		for (LocalDate date : getDaysInMonth(dateToFetch)) {
-			Document datePage = fetchDatePage(registrationsPage, date);
-			List<LocalTime> tickTimes = getTickTimes(datePage);
-			List<LocalTime> manualRegistrations = getManualRegistrations(datePage);
-			String irregularities = getIrregularities(datePage);
-			String rawDayCode = getRawDayCode(datePage);
-			Duration totalDuration = getTotalDuration(datePage, date, tickTimes, manualRegistrations);
-			Duration neededDuration = getNeededDuration(date, rawDayCode, totalDuration, tickTimes, manualRegistrations);
-			Duration overtime = getOvertime(totalDuration, neededDuration);
-			String comment = getComment(irregularities, rawDayCode);
-			prestations.add(new Prestation(date, totalDuration, neededDuration, overtime, null, tickTimes, manualRegistrations, rawDayCode, irregularities, comment));
+	public void setTransport(HttpTransport transport) {
+		this.transport = transport;
+		this.sessionPool = createSessionPool();
+	}
+	
+	public HttpTransport getTransport() {
+		return transport;
+	}
+	
+	/**
+	 * Replaces the metrics, which are registered with JMX on {@link #init(Map)} unless the metrics config is "none".
+	 */
+	public void setMetrics(FetchMetrics metrics) {
+		if (metrics != registeredMetrics){
+			unregisterJmxMetrics();
 		}
-		
-		prestations = filterWeekDays(prestations);
-		setWeekResults(prestations);
-		
-		Duration totalTime = getTotalTime(prestations);
-		Duration totalOvertime = getTotalOverTime(prestations);
-		LocalTime timeToGoHome = getTimeToGoHome(prestations, totalOvertime);
-		
-		return new FetchResult(new LocalDate(), dateToFetch, prestations, totalTime, totalOvertime, timeToGoHome);
+		this.metrics = metrics;
+		this.sessionPool = createSessionPool();
 	}
-
 	
-
-	private Duration getNeededDuration(LocalDate date, String rawDayCode, Duration totalDuration, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
-		if (isHoliday(rawDayCode)){
-			return ZERO;
+	public FetchMetrics getMetrics() {
+		return metrics;
+	}
+	
+	public Account getDefaultAccount() {
+		return defaultAccount;
+	}
+	
+	/**
+	 * Deadlines are cancelled as soon as their fetch completes, and then dropped from the queue instead of waiting to expire.
+	 */
+	private static ScheduledExecutorService createDeadlines() {
+		ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(FETCHER_SHORT_NAME + "-deadline"));
+		deadlines.setRemoveOnCancelPolicy(true);
+		return deadlines;
+	}
+	
+	private SessionPool createSessionPool() {
+		return createSessionPool(transport);
+	}
+	
+	SessionPool createSessionPool(HttpTransport transport) {
+		return new SessionPool(transport, metrics, maxSessions, TimeUnit.MINUTES.toMillis(sessionIdleMinutes));
+	}
+	
+	private FetchMetrics registerJmxMetrics() {
+		try {
+			registeredMetrics = JmxFetchMetrics.register(FETCHER_SHORT_NAME);
+			return registeredMetrics;
+		} catch (JMException e) {
+			return FetchMetrics.DISABLED;
 		}
-		
-		if (registrationFound(tickTimes, manualRegistrations)){
-			if (isToday(date)){
-				if (totalDuration.isLongerThan(standardDayDuration())){
-					return standardDayDuration();
-				} else return totalDuration;
-			} else {
-				return standardDayDuration();
+	}
+	
+	private void unregisterJmxMetrics() {
+		if (registeredMetrics != null){
+			try {
+				registeredMetrics.unregister();
+			} catch (JMException e) {
+				// the MBean is gone already
 			}
+			registeredMetrics = null;
 		}
-		
-		return ZERO;
 	}
-
-	private Document fetchRegistrationsPage(Document previousDocument) throws IOException {
-		return Jsoup.connect(baseUrl)
-				  .data(requestData(previousDocument))
-				  .data(EVENTTARGET, "mnuHoofd")
-				  .data(EVENTARGUMENT, "registraties")
-				  .userAgent("Mozilla")
-				  .cookie(COOKIE_SESSIONID, sessionIdCookie)
-				  .cookie(COOKIE_AUTHDEF, authdefCookie)
-				  .timeout(TIMEOUT)
-				  .post();
+	
+	/**
+	 * Unregisters the metrics MBean, closes the history files and stops the threads of the fetcher, which is not to be used afterwards.
+	 */
+	public void close() {
+		unregisterJmxMetrics();
+		closeHistoryStores();
+		asyncExecutor.shutdownNow();
+		hedgeExecutor.shutdownNow();
+		deadlines.shutdownNow();
 	}
-
-	private Document fetchDatePage(Document previousPage, LocalDate date) throws IOException {
-		
-		String dateAsString = formatDateAsString(date);
-		
-		Elements link = previousPage.getElementsByAttributeValue("title", dateAsString);
-		String linkHref = link.attr("href");
-		String dateAsCode = getDateAsCode(linkHref);
-		
-		return Jsoup.connect(baseUrl)
-				  .data(requestData(previousPage))
-				  .data(EVENTTARGET, REGISTRATIES_CAL_THIS_MONTH)
-				  .data(EVENTARGUMENT, dateAsCode)
-				  .userAgent("Mozilla")
-				  .cookie(COOKIE_SESSIONID, sessionIdCookie)
-				  .cookie(COOKIE_AUTHDEF, authdefCookie)
-				  .timeout(TIMEOUT)
-				  .post();
+	
+	/**
+	 * Totals the days of every account per person, per week and for the team. As many accounts as the concurrency are fetched at a time,
+	 * from the history, the day caches or the archive when they hold the days; the totals are computed in parallel.
+	 */
+	public TeamReport teamReport(List<Account> accounts, LocalDate from, LocalDate to) throws FetchException {
+		final List<LocalDate> dates = getDaysBetween(from, to);
+		final FetchContext context = FetchContext.unbounded();
+		CompletionService<PrestationColumns> fetches = new ExecutorCompletionService<PrestationColumns>(asyncExecutor);
+		List<Future<PrestationColumns>> futures = new ArrayList<Future<PrestationColumns>>();
+		try {
+			int submitted = 0;
+			for (; submitted < Math.min(Math.max(1, concurrency), accounts.size()); submitted++) {
+				futures.add(fetches.submit(prestationColumnsTask(accounts.get(submitted), dates, context)));
+			}
+			for (int completed = 0; completed < accounts.size(); completed++) {
+				await(fetches.take());
+				if (submitted < accounts.size()){
+					futures.add(fetches.submit(prestationColumnsTask(accounts.get(submitted++), dates, context)));
+				}
+			}
+			List<PrestationColumns> persons = new ArrayList<PrestationColumns>();
+			for (Future<PrestationColumns> future : futures) {
+				persons.add(await(future));
+			}
+			return TeamReporter.report(persons, from, to);
+		} catch (IOException e) {
+			throw new FetchException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FetchException(e);
+		} finally {
+			context.cancel();
+			for (Future<PrestationColumns> future : futures) {
+				future.cancel(true);
+			}
+		}
 	}
-
-	private String formatDateAsString(LocalDate date) {
-		return dateTimeFormat.print(date);
+	
+	private Callable<PrestationColumns> prestationColumnsTask(final Account account, final List<LocalDate> dates, final FetchContext context) {
+		return new Callable<PrestationColumns>() {
+			public PrestationColumns call() throws IOException {
+				return prestationColumns(account, dates, context);
+			}
+		};
 	}
-
-	private String getDateAsCode(String linkHref) {
-		Matcher matcher = pagePattern.matcher(linkHref);
-		if (matcher.matches()){
-			return matcher.group(2);
+	
+	/**
+	 * @return the time and overtime of the days between both dates, inclusive, as far as they are in the history; nothing is fetched
+	 */
+	public PrestationTotals historyTotals(LocalDate from, LocalDate to) throws FetchException {
+		return historyTotals(defaultAccount, from, to);
+	}
+	
+	public PrestationTotals historyTotals(Account account, LocalDate from, LocalDate to) throws FetchException {
+		try {
+			HistoryStore history = historyStore(account);
+			return history != null ? history.totals(from, to) : new PrestationTotals();
+		} catch (IOException e) {
+			throw new FetchException(e);
 		}
-		else return "5510";
 	}
 	
-	private Document fetchHomePage() throws IOException {
-		Response response = Jsoup.connect(baseUrl)
-					.userAgent("Mozilla")
-		 			.method(Method.GET)
-		 			.execute();
-		fetchCookies(response);
-		return response.parse();
+	/**
+	 * @return the history of the account, or null when no history directory is configured
+	 */
+	private HistoryStore historyStore(Account account) throws IOException {
+		if (StringUtils.isEmpty(historyDir)){
+			return null;
+		}
+		synchronized (historyStores) {
+			HistoryStore history = historyStores.get(account);
+			if (history == null){
+				history = new HistoryStore(new File(historyDir, account.getFileName() + HISTORY_EXTENSION));
+				historyStores.put(account, history);
+			}
+			return history;
+		}
 	}
-
-	private HashMap<String, String> requestData(Document document) {
-		HashMap<String, String> requestData = new HashMap<String, String>();
-		requestData.put(VIEWSTATE, scrapeViewState(document));
-		requestData.put(EVENTVALIDATION,  scrapeEventValidation(document));
-		return requestData;
+	
+	/**
+	 * @return the history to rebuild and store prestations with, or null when replaying: 
+	 * its prestations were calculated with the rules of the time they were stored
+	 */
+	private HistoryStore calculationHistory(Account account) throws IOException {
+		return isReplaying() ? null : historyStore(account);
 	}
 	
-	private String scrapeEventValidation(Document document) {
-		return scrapeValueFromElement(EVENTVALIDATION, document);
+	private void closeHistoryStores() {
+		synchronized (historyStores) {
+			for (HistoryStore history : historyStores.values()) {
+				try {
+					history.close();
+				} catch (IOException e) {
+					// nothing is lost, every record was written to the mapped file
+				}
+			}
+			historyStores.clear();
+		}
 	}
-
-	private String scrapeViewState(Document document) {
-		return scrapeValueFromElement(VIEWSTATE, document);
+	
+	private ResponseArchive responseArchive(Account account) {
+		ResponseArchive archive = archives.get(account);
+		if (archive == null){
+			archive = new ResponseArchive(new File(archiveDir, account.getFileName()));
+			ResponseArchive existingArchive = archives.putIfAbsent(account, archive);
+			if (existingArchive != null){
+				archive = existingArchive;
+			}
+		}
+		return archive;
 	}
 	
-	private void fetchCookies(Response homepageResponse) {
-		sessionIdCookie = homepageResponse.cookie(COOKIE_SESSIONID);
-		authdefCookie   = homepageResponse.cookie(COOKIE_AUTHDEF);
+	private boolean isRecording() {
+		return ARCHIVE_RECORD.equalsIgnoreCase(archiveMode) && !StringUtils.isEmpty(archiveDir);
 	}
-
-	private String scrapeValueFromElement(String name, Document document) {
-		return document.select("#" + name).first().attr("value");
+	
+	private boolean isReplaying() {
+		return ARCHIVE_REPLAY.equalsIgnoreCase(archiveMode) && !StringUtils.isEmpty(archiveDir);
 	}
 	
-	private List<LocalDate> getDaysInMonth(LocalDate workingDate) {
-		List<LocalDate> dates = new ArrayList<LocalDate>();
-		int daysOfMonth = workingDate.toDateTimeAtCurrentTime().dayOfMonth().getMaximumValue();
-		for (int day = 1; day <= daysOfMonth; day++) {
-			dates.add(new LocalDate(workingDate.getYear(), workingDate.getMonthOfYear(), day));
+	private DayCache dayCache(Account account) {
+		DayCache dayCache = dayCaches.get(account);
+		if (dayCache == null){
+			String directory = cacheDir == null || account.equals(defaultAccount) ? cacheDir : new File(cacheDir, account.getFileName()).getPath();
+			dayCache = new DayCache(directory);
+			DayCache existingCache = dayCaches.putIfAbsent(account, dayCache);
+			if (existingCache != null){
+				dayCache = existingCache;
+			}
 		}
-		return dates;
+		return dayCache;
 	}
 	
-	private Duration getTotalDuration(Document datePage, LocalDate date, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
-		String prestationAsString = datePage.select(REGISTRATIES_TOTAAL_GEPRESTEERD).first().text();
-		Duration totalDuration = periodFormat.parsePeriod(prestationAsString).toStandardDuration();
-		
-		if (isToday(date) && totalDuration.equals(Duration.ZERO)){
-			return figureoutTodaysWorkingHours(datePage, tickTimes, manualRegistrations);
+	private TimesheetKernel createKernel() {
+		return new TimesheetKernel(minutesLunch, TimesheetKernel.minuteOfDay(startLunchTime), TimesheetKernel.minuteOfDay(endLunchTime));
+	}
+	
+	public TodayWatch watchToday(long periodMillis) {
+		return watchToday(defaultAccount, periodMillis);
+	}
+	
+	public TodayWatch watchToday(Account account, long periodMillis) {
+		return new TodayWatch(this, account, periodMillis);
+	}
+	
+	/**
+	 * Days that are closed and all in the history are rebuilt from it without fetching.
+	 * @return a {@link PartialFetchResult} when some, but not all, of the day pages failed after their retries
+	 */
+	private FetchResult fetchData(Account account, SessionPool sessions, List<LocalDate> dates, LocalDate dateToFetch, FetchContext context) throws IOException {
+		HistoryStore history = calculationHistory(account);
+		if (history != null && areClosed(dates) && history.containsAll(dates)){
+			long startNanos = System.nanoTime();
+			List<Prestation> prestations = filterWeekDays(history.get(dates));
+			FetchResult result = toFetchResult(dateToFetch, prestations, PrestationAggregator.aggregate(prestations), null);
+			metrics.phaseCompleted(FetchPhase.CALCULATION, System.nanoTime() - startNanos);
+			return result;
 		}
-		
-		if ((totalDuration == null || totalDuration.isEqual(Duration.ZERO)) && !isEmpty(manualRegistrations)){
-			return calculateTotalDurationWithManualRegistrations(totalDuration, date, tickTimes, manualRegistrations);
+		List<LocalDate> missingDays = new ArrayList<LocalDate>();
+		Map<LocalDate, DayRegistration> days = fetchDayRegistrations(account, sessions, dates, context, missingDays);
+		long startNanos = System.nanoTime();
+		List<Prestation> prestations = toPrestations(history, dates, days);
+		PrestationAggregation aggregation = PrestationAggregator.aggregate(prestations);
+		FetchResult result = toFetchResult(dateToFetch, prestations, aggregation, getPrestationOfToday(prestations), missingDays);
+		metrics.phaseCompleted(FetchPhase.CALCULATION, System.nanoTime() - startNanos);
+		return result;
+	}
+	
+	Map<LocalDate, DayRegistration> fetchDayRegistrations(Account account, List<LocalDate> dates, FetchContext context) throws IOException {
+		List<LocalDate> missingDays = new ArrayList<LocalDate>();
+		Map<LocalDate, DayRegistration> days = fetchDayRegistrations(account, sessionPool, dates, context, missingDays);
+		if (!missingDays.isEmpty()){
+			throw new IOException("Unable to fetch the day pages of " + missingDays);
 		}
-		
-		return totalDuration;
+		return days;
 	}
 	
-	private Duration getOvertime(Duration totalDuration, Duration neededDuration) {
-		return totalDuration.minus(neededDuration);
+	List<Prestation> toPrestations(Account account, List<LocalDate> dates, Map<LocalDate, DayRegistration> days) throws IOException {
+		return toPrestations(calculationHistory(account), dates, days);
 	}
 	
-	private void setWeekResults(List<Prestation> prestations) {
-		for (Prestation prestation : prestations) {
-			if (isLastPrestationOfWeek(prestation, prestations)){
-				prestation.setWeekOvertime(weekOvertime(prestation, prestations));
-				prestation.setLastDayOfWeek(true);
+	/**
+	 * Rebuilds the days from the history when it holds all of them, like {@link #fetchData}, but hands them to the stream one by one.
+	 */
+	private void streamData(Account account, List<LocalDate> dates, final PrestationStream stream, FetchContext context) throws IOException {
+		final HistoryStore history = calculationHistory(account);
+		final List<LocalDate> missingDays = new ArrayList<LocalDate>();
+		if (history != null && areClosed(dates) && history.containsAll(dates)){
+			for (Prestation prestation : history.get(dates)) {
+				stream(stream, prestation);
 			}
+		} else {
+			fetchDayRegistrations(account, sessionPool, dates, context, new DaySink() {
+				public void dayFetched(DayRegistration day) throws IOException {
+					Prestation prestation = toPrestation(day);
+					addToHistory(history, day, prestation);
+					stream(stream, prestation);
+				}
+				
+				public void dayMissing(LocalDate date) {
+					missingDays.add(date);
+					stream.skip(date);
+				}
+			});
 		}
+		stream.complete(getTimeToGoHome(stream.getPrestationOfToday(), stream.getTotal().getOvertime()), missingDays);
 	}
 	
-	private boolean isLastPrestationOfWeek(Prestation prestation, List<Prestation> prestations) {
-		for (Prestation otherPrestation : prestations) {
-			if (areInSameWeek(prestation, otherPrestation) && otherPrestation.getDay().isAfter(prestation.getDay())){
-				return false;
+	private void stream(PrestationStream stream, Prestation prestation) {
+		if (isShown(prestation)){
+			stream.offer(prestation);
+		} else {
+			stream.skip(prestation.getDay());
+		}
+	}
+	
+	private Map<LocalDate, DayRegistration> fetchDayRegistrations(Account account, SessionPool sessions, List<LocalDate> dates, FetchContext context, final List<LocalDate> missingDays) throws IOException {
+		final Map<LocalDate, DayRegistration> days = new HashMap<LocalDate, DayRegistration>();
+		fetchDayRegistrations(account, sessions, dates, context, new DaySink() {
+			public void dayFetched(DayRegistration day) {
+				days.put(day.getDate(), day);
+			}
+			
+			public void dayMissing(LocalDate date) {
+				missingDays.add(date);
 			}
+		});
+		return days;
+	}
+	
+	/**
+	 * Like {@link #fetchDayRegistrations(Account, List, FetchContext)}, the days are all fetched or the fetch fails.
+	 * Days that are closed and all in the history are taken from it, like {@link #fetchData}.
+	 */
+	private PrestationColumns prestationColumns(Account account, List<LocalDate> dates, FetchContext context) throws IOException {
+		final PrestationColumns columns = new PrestationColumns(account.getId(), dates.size());
+		final HistoryStore history = calculationHistory(account);
+		if (history != null && areClosed(dates) && history.containsAll(dates)){
+			history.addTo(columns, dates);
+			return columns;
+		}
+		final List<LocalDate> missingDays = new ArrayList<LocalDate>();
+		fetchDayRegistrations(account, sessionPool, dates, context, new DaySink() {
+			public void dayFetched(DayRegistration day) throws IOException {
+				Prestation prestation = toPrestation(day);
+				addToHistory(history, day, prestation);
+				if (isShown(prestation)){
+					columns.add(day, prestation);
+				}
+			}
+			
+			public void dayMissing(LocalDate date) {
+				missingDays.add(date);
+			}
+		});
+		if (!missingDays.isEmpty()){
+			throw new IOException("Unable to fetch the day pages of " + missingDays + " for " + account);
+		}
+		return columns;
+	}
+	
+	/**
+	 * Cached days go to the sink first, the fetched days follow in date order. Closed days are cached on disk,
+	 * days after today in memory for a short time; open days could still change and are fetched again next time.
+	 * While recording, cached days that are not in the archive yet are fetched again, so their fragments get recorded too.
+	 */
+	private void fetchDayRegistrations(final Account account, SessionPool sessions, List<LocalDate> dates, FetchContext context, final DaySink sink) throws IOException {
+		if (isReplaying()){
+			replayDays(responseArchive(account), dates, sink);
+			return;
+		}
+		final DayCache dayCache = dayCache(account);
+		final ResponseArchive archive = isRecording() ? responseArchive(account) : null;
+		List<LocalDate> datesToFetch = new ArrayList<LocalDate>();
+		
+		for (LocalDate date : dates) {
+			DayRegistration day = archive != null && !archive.contains(date) ? null : cachedDay(account, dayCache, date);
+			if (day != null){
+				sink.dayFetched(day);
+			} else {
+				datesToFetch.add(date);
+			}
+		}
+		
+		fetchDays(sessions.session(account), datesToFetch, context, new DaySink() {
+			public void dayFetched(DayRegistration day) throws IOException {
+				if (isClosed(day.getDate())){
+					dayCache.put(day);
+				} else if (isFuture(day.getDate())){
+					futureDays.put(account, day);
+				}
+				if (archive != null){
+					archive.put(day);
+				}
+				sink.dayFetched(day);
+			}
+			
+			public void dayMissing(LocalDate date) throws IOException {
+				sink.dayMissing(date);
+			}
+		});
+		dayCache.flush();
+		if (archive != null){
+			archive.flush();
 		}
-		return true;
 	}
 	
-	private boolean areInSameWeek(Prestation prestation, Prestation otherPrestation) {
-		return prestation.getDay().getWeekOfWeekyear() == otherPrestation.getDay().getWeekOfWeekyear();
+	private DayRegistration cachedDay(Account account, DayCache dayCache, LocalDate date) throws IOException {
+		if (isClosed(date)){
+			return dayCache.get(date);
+		}
+		if (isFuture(date)){
+			return futureDays.get(account, date);
+		}
+		return null;
 	}
 	
-	private Duration weekOvertime(Prestation prestation, List<Prestation> prestations) {
-		Duration weekOvertime = Duration.ZERO;
-		for (Prestation otherPrestation : prestations) {
-			if (areInSameWeek(prestation, otherPrestation)){
-				weekOvertime = weekOvertime.plus(otherPrestation.getOvertime());
+	/**
+	 * Days that were not recorded are missing; no request is made.
+	 */
+	private void replayDays(ResponseArchive archive, List<LocalDate> dates, DaySink sink) throws IOException {
+		int replayed = 0;
+		for (LocalDate date : dates) {
+			DayRegistration day = archive.get(date);
+			if (day != null){
+				sink.dayFetched(day);
+				replayed++;
+			} else {
+				sink.dayMissing(date);
 			}
 		}
-		return weekOvertime;
+		if (replayed == 0 && !dates.isEmpty()){
+			throw new IOException("None of the days from " + dates.get(0) + " to " + dates.get(dates.size() - 1) + " were recorded in " + archiveDir);
+		}
 	}
 	
-	private String getIrregularities(Document datePage) {
-		Elements onregelmatigheden = datePage.select(REGISTRATIES_IRREGULARTIES);
-		if (!onregelmatigheden.isEmpty()){
-			return onregelmatigheden.first().text();
+	/**
+	 * Closed days that are not in the history yet are added to it.
+	 */
+	private List<Prestation> toPrestations(HistoryStore history, List<LocalDate> dates, Map<LocalDate, DayRegistration> days) throws IOException {
+		List<Prestation> prestations = new ArrayList<Prestation>();
+		for (LocalDate date : dates) {
+			DayRegistration day = days.get(date);
+			if (day != null){
+				Prestation prestation = toPrestation(day);
+				addToHistory(history, day, prestation);
+				prestations.add(prestation);
+			}
 		}
-		else return "";
+		
+		return filterWeekDays(prestations);
 	}
 	
-	private String getComment(String irregularities, String rawDayCode) {
-		if (hasIrregularities(irregularities)){
-			return irregularities;
-		} else if (isHoliday(rawDayCode)){
-			return "Holiday";
-		} else if (hasRawDayCode(rawDayCode)){
-			return rawDayCode;
+	private void addToHistory(HistoryStore history, DayRegistration day, Prestation prestation) throws IOException {
+		if (history != null && isClosed(day.getDate()) && !history.contains(day.getDate())){
+			history.append(day, prestation);
 		}
-		else return "";
 	}
-
-	private List<LocalTime> getManualRegistrations(Document datePage){
-		return fetchRegistrations(datePage, REGISTRATIES_MANUEEL);
+	
+	DayRegistration fetchDayRegistration(Account account, LocalDate date, FetchContext context) throws IOException {
+		if (isReplaying()){
+			DayRegistration day = responseArchive(account).get(date);
+			if (day == null){
+				throw new IOException(date + " was not recorded in " + archiveDir);
+			}
+			return day;
+		}
+		DayRegistration day = fetchDayWithRetries(sessionPool.session(account), date, context);
+		if (isRecording()){
+			ResponseArchive archive = responseArchive(account);
+			archive.put(day);
+			archive.flush();
+		}
+		return day;
+	}
+	
+	FetchResult toFetchResult(LocalDate dateToFetch, List<Prestation> prestations, PrestationAggregation aggregation, Prestation todaysPrestation) {
+		return toFetchResult(dateToFetch, prestations, aggregation, todaysPrestation, Collections.<LocalDate>emptyList());
 	}
 	
-	private List<LocalTime> getTickTimes(Document datePage) {
-		return fetchRegistrations(datePage, REGISTRATIES_TICK);
+	private FetchResult toFetchResult(LocalDate dateToFetch, List<Prestation> prestations, PrestationAggregation aggregation, Prestation todaysPrestation, List<LocalDate> missingDays) {
+		Duration totalTime = aggregation.getTotal().getTime();
+		Duration totalOvertime = aggregation.getTotal().getOvertime();
+		LocalTime timeToGoHome = getTimeToGoHome(todaysPrestation, totalOvertime);
+		
+		if (!missingDays.isEmpty()){
+			return new PartialFetchResult(new LocalDate(), dateToFetch, prestations, totalTime, totalOvertime, timeToGoHome, missingDays);
+		}
+		return new FetchResult(new LocalDate(), dateToFetch, prestations, totalTime, totalOvertime, timeToGoHome);
+	}
+	
+	/**
+	 * Days that still fail after their retries go to the sink as missing, unless none of the days could be fetched.
+	 */
+	private void fetchDays(ElineSession session, List<LocalDate> dates, FetchContext context, DaySink sink) throws IOException {
+		if (concurrency <= 1 || dates.size() <= 1){
+			int fetched = 0;
+			IOException failure = null;
+			for (LocalDate date : dates) {
+				try {
+					sink.dayFetched(fetchDayWithRetries(session, date, context));
+					fetched++;
+				} catch (IOException e) {
+					failure = missingDay(date, e, context, sink);
+				}
+			}
+			someDaysFetched(fetched, failure);
+			return;
+		}
+		fetchDaysConcurrently(session, dates, context, sink);
 	}
 
-	private List<LocalTime> fetchRegistrations(Document datePage, String registrationPattern) {
-		List<LocalTime> registrations = new ArrayList<LocalTime>();
-		boolean lastFound = false;
-		for (int i = 2; i < MAX_REGISTRATIONS && !lastFound; i++){
-			String id = String.format(registrationPattern, i);
-			LocalTime tickTime = fetchRegistration(datePage, id);
-			if (!MIDNIGHT.equals(tickTime)){
-				registrations.add(tickTime);
-			} else {
-				lastFound = true;
+	/**
+	 * The days are handed to the sink on the calling thread, in date order; each result is let go once it is handed over.
+	 */
+	private void fetchDaysConcurrently(final ElineSession session, List<LocalDate> dates, final FetchContext context, DaySink sink) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, dates.size()), new DaemonThreadFactory(FETCHER_SHORT_NAME));
+		try {
+			List<Future<DayRegistration>> futures = new ArrayList<Future<DayRegistration>>();
+			for (final LocalDate date : dates) {
+				futures.add(executor.submit(new Callable<DayRegistration>() {
+					public DayRegistration call() throws IOException {
+						return fetchDayWithRetries(session, date, context);
+					}
+				}));
 			}
+			int fetched = 0;
+			IOException failure = null;
+			for (int i = 0; i < futures.size(); i++) {
+				DayRegistration day;
+				try {
+					day = await(futures.set(i, null));
+				} catch (IOException e) {
+					failure = missingDay(dates.get(i), e, context, sink);
+					continue;
+				}
+				sink.dayFetched(day);
+				fetched++;
+			}
+			someDaysFetched(fetched, failure);
+		} finally {
+			executor.shutdownNow();
 		}
-		return registrations;
 	}
 	
-	private String getRawDayCode(Document datePage){
-		Elements dayCode = datePage.select(REGISTRATIES_DAYCODE);
-		if (!dayCode.isEmpty()){
-			return dayCode.first().text();
+	/**
+	 * Gives up on the day, unless the whole fetch was cancelled, ran out of time or got interrupted.
+	 */
+	private IOException missingDay(LocalDate date, IOException failure, FetchContext context, DaySink sink) throws IOException {
+		context.check();
+		if (Thread.currentThread().isInterrupted()){
+			throw failure;
 		}
-		return DayCode.UNKNOWN.getRawCode();
+		sink.dayMissing(date);
+		metrics.dayMissing();
+		return failure;
 	}
 	
-	private Duration getTotalTime(List<Prestation> prestations) {
-		Duration totalDuration = Duration.ZERO;
-		for (Prestation prestation : prestations) {
-			totalDuration = totalDuration.plus(prestation.getDuration());
+	private void someDaysFetched(int fetched, IOException failure) throws IOException {
+		if (fetched == 0 && failure != null){
+			throw failure;
 		}
-		return totalDuration;
 	}
 
-	private Duration getTotalOverTime(List<Prestation> prestations) {
-		Duration totalOvertime = Duration.ZERO;
-		for (Prestation prestation : prestations) {
-			totalOvertime = totalOvertime.plus(prestation.getOvertime());
+	private <T> T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while fetching day pages");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
 		}
-		return totalOvertime;
 	}
 	
-	private LocalTime getTimeToGoHome(List<Prestation> prestations, Duration totalOvertime) {
-		Prestation todaysPrestation = getPrestationOfToday(prestations);
-		if (todaysPrestation != null && todaysPrestation.getTickTimes().size() >0){
-			LocalTime firstCheckinTime = firstRegistration(todaysPrestation.getTickTimes(), todaysPrestation.getManualRegistrations());
-			LocalTime checkoutTime = firstCheckinTime.plusMinutes(minutesPerDay).plusMillis((int)middayBreak().getMillis()).minusMillis((int)totalOvertime.getMillis());
-			if (checkoutTime.isBefore(new LocalTime(14, 30))){
-				checkoutTime.minusMinutes(30);
+	private DayRegistration fetchDayWithRetries(ElineSession session, LocalDate date, FetchContext context) throws IOException {
+		for (int retry = 1; ; retry++) {
+			try {
+				return fetchDayHedged(session, date, context);
+			} catch (IOException e) {
+				context.check();
+				if (retry > retryPolicy.getMaxRetries() || Thread.currentThread().isInterrupted()){
+					throw e;
+				}
+				metrics.dayRetried();
+				pause(Math.max(0, Math.min(retryPolicy.backoffMillis(retry), context.remainingMillis())));
+				context.check();
 			}
-			return checkoutTime;
 		}
-		return null;
 	}
 	
-	private List<Prestation> filterWeekDays(List<Prestation> prestations) {
-		List<Prestation> filteredList = new ArrayList<Prestation>();
-		for (Prestation prestation : prestations) {
-			if (isWeekDay(prestation.getDay()) || (isWeekendDay(prestation.getDay()) && hasRegistrations(prestation))){
-				filteredList.add(prestation);
-			}
+	private void pause(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry a day page");
 		}
-		return filteredList;
 	}
 	
-	private Prestation getPrestationOfToday(List<Prestation> prestations) {
-		for (Prestation prestation : prestations) {
-			if (isToday(prestation)){
-				return prestation;
+	/**
+	 * Once the day page takes longer than the hedge percentile of the recent day pages, the same page is asked a second time;
+	 * the first answer wins.
+	 */
+	private DayRegistration fetchDayHedged(final ElineSession session, final LocalDate date, final FetchContext context) throws IOException {
+		long hedgeAfterMillis = hedgePercentile > 0 ? dayLatencies.percentileMillis(hedgePercentile) : -1;
+		if (hedgeAfterMillis < 0){
+			return fetchTimedDay(session, date, context);
+		}
+		Callable<DayRegistration> fetch = new Callable<DayRegistration>() {
+			public DayRegistration call() throws IOException {
+				return fetchTimedDay(session, date, context);
+			}
+		};
+		CompletionService<DayRegistration> attempts = new ExecutorCompletionService<DayRegistration>(hedgeExecutor);
+		List<Future<DayRegistration>> futures = new ArrayList<Future<DayRegistration>>();
+		futures.add(attempts.submit(fetch));
+		try {
+			Future<DayRegistration> first = attempts.poll(hedgeAfterMillis, TimeUnit.MILLISECONDS);
+			if (first != null){
+				return await(first);
+			}
+			metrics.dayHedged();
+			futures.add(attempts.submit(fetch));
+			try {
+				return await(attempts.take());
+			} catch (IOException e) {
+				return await(attempts.take());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while fetching " + date);
+		} finally {
+			for (Future<DayRegistration> future : futures) {
+				future.cancel(true);
 			}
 		}
-		return null;
 	}
 	
-	private LocalTime fetchRegistration(Document datePage, String id) {
-		Elements registrations  = datePage.select(id);
-		if (registrations != null && !registrations.isEmpty()){			
-			String prestationCheckinAsString = registrations.first().text();
-			return LocalTime.parse(prestationCheckinAsString, registrionDateTimeFormat);
+	private DayRegistration fetchTimedDay(ElineSession session, LocalDate date, FetchContext context) throws IOException {
+		long startNanos = System.nanoTime();
+		DayRegistration day = fetchDay(session, date, context);
+		dayLatencies.record(System.nanoTime() - startNanos);
+		return day;
+	}
+	
+	private DayRegistration fetchDay(ElineSession session, LocalDate date, FetchContext context) throws IOException {
+		if (streamingParser){
+			return session.scannedDayPage(date, context).getExtractor().toDayRegistration(date);
 		}
-		return LocalTime.MIDNIGHT;
+		return DayPageExtractor.extract(fetchDatePage(session, date, context), date);
 	}
 	
-	private Duration calculateTotalDurationWithManualRegistrations(Duration totalDuration, LocalDate date, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
-		Duration fallback = totalDuration;
-		List<LocalTime> allRegistrations = getAllRegistrations(tickTimes, manualRegistrations);
+	Prestation toPrestation(DayRegistration day) {
+		LocalDate date = day.getDate();
+		List<LocalTime> tickTimes = day.getTickTimes();
+		List<LocalTime> manualRegistrations = day.getManualRegistrations();
+		String irregularities = day.getIrregularities();
+		String rawDayCode = day.getRawDayCode();
+		Duration totalDuration = getTotalDuration(day.getTotalDuration(), date, tickTimes, manualRegistrations);
+		Duration neededDuration = getNeededDuration(date, rawDayCode, totalDuration, tickTimes, manualRegistrations);
+		Duration overtime = getOvertime(totalDuration, neededDuration);
+		String comment = getComment(irregularities, rawDayCode);
+		return new Prestation(date, totalDuration, neededDuration, overtime, null, tickTimes, manualRegistrations, rawDayCode, irregularities, comment);
+	}
+	
+	private boolean areClosed(List<LocalDate> dates) {
+		for (LocalDate date : dates) {
+			if (!isClosed(date)){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean isClosed(LocalDate date) {
+		return date.isBefore(new LocalDate().minusDays(openDays));
+	}
+	
+	private boolean isFuture(LocalDate date) {
+		return date.isAfter(new LocalDate());
+	}
+
+	private Duration getNeededDuration(LocalDate date, String rawDayCode, Duration totalDuration, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
+		if (isHoliday(rawDayCode)){
+			return ZERO;
+		}
 		
-		if (allRegistrations.size() %2 == 0){
-			Duration totalCalculatedTime = calculateDurationOverIntervals(allRegistrations);
-			totalCalculatedTime = compensateForLunch(totalCalculatedTime, allRegistrations);
-			if (totalDuration.isLongerThan(totalCalculatedTime)){
-				return fallback;
+		if (registrationFound(tickTimes, manualRegistrations)){
+			if (isToday(date)){
+				if (totalDuration.isLongerThan(standardDayDuration())){
+					return standardDayDuration();
+				} else return totalDuration;
 			} else {
-				return totalCalculatedTime;
+				return standardDayDuration();
 			}
-		} 
+		}
 		
-		return fallback;
+		return ZERO;
 	}
 
-	private List<LocalTime> getAllRegistrations(List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
-		List<LocalTime> allRegistrations = new ArrayList<LocalTime>();
-		allRegistrations.addAll(tickTimes);
-		allRegistrations.addAll(manualRegistrations);
-		sort(allRegistrations);
-		allRegistrations = removeDuplicates(allRegistrations);
-		return allRegistrations;
+	private Document fetchDatePage(ElineSession session, LocalDate date, FetchContext context) throws IOException {
+		return session.dayPage(date, context);
 	}
-
-	private void sort(List<LocalTime> allRegistrations) {
-		Collections.sort(allRegistrations);
+	
+	private List<LocalDate> getDaysBetween(LocalDate from, LocalDate to) {
+		List<LocalDate> dates = new ArrayList<LocalDate>();
+		for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+			dates.add(date);
+		}
+		return dates;
 	}
-
-	private Duration compensateForLunch(Duration totalCalculatedTime, List<LocalTime> allRegistrations) {
-		if (!needsCorrectionForLunch(allRegistrations)){
-			totalCalculatedTime = totalCalculatedTime.minus(middayBreak());
+	
+	List<LocalDate> getDaysInMonth(LocalDate workingDate) {
+		List<LocalDate> dates = new ArrayList<LocalDate>();
+		int daysOfMonth = workingDate.toDateTimeAtCurrentTime().dayOfMonth().getMaximumValue();
+		for (int day = 1; day <= daysOfMonth; day++) {
+			dates.add(new LocalDate(workingDate.getYear(), workingDate.getMonthOfYear(), day));
 		}
-		return totalCalculatedTime;
+		return dates;
 	}
-
-	private Duration middayBreak() {
-		return new Duration(minutesLunch*60*1000);
+	
+	private Duration getTotalDuration(Duration totalDuration, LocalDate date, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
+		if (isToday(date) && totalDuration.equals(Duration.ZERO)){
+			return figureoutTodaysWorkingHours(tickTimes, manualRegistrations);
+		}
+		
+		if ((totalDuration == null || totalDuration.isEqual(Duration.ZERO)) && !isEmpty(manualRegistrations)){
+			return calculateTotalDurationWithManualRegistrations(totalDuration, date, tickTimes, manualRegistrations);
+		}
+		
+		return totalDuration;
 	}
-
-	private boolean needsCorrectionForLunch(List<LocalTime> allRegistrations) {
-		Duration timeDuringLunchHours = calculateTimeOutDuringLunchHours(allRegistrations);
-		if (timeDuringLunchHours.isLongerThan(middayBreak())){
-			return true;
+	
+	private Duration getOvertime(Duration totalDuration, Duration neededDuration) {
+		return totalDuration.minus(neededDuration);
+	}
+	
+	private String getComment(String irregularities, String rawDayCode) {
+		if (hasIrregularities(irregularities)){
+			return irregularities;
+		} else if (isHoliday(rawDayCode)){
+			return "Holiday";
+		} else if (hasRawDayCode(rawDayCode)){
+			return rawDayCode;
 		}
-		return false;
+		else return "";
 	}
 
-	private Duration calculateDurationOverIntervals(List<LocalTime> allRegistrations) {
-		Duration totalDuration = Duration.ZERO;
-		boolean started = false;
-		LocalTime startTime = null;
-		for (LocalTime localTime : allRegistrations) {
-			if (!started){
-				startTime = localTime;
-				started = true;
-			} else {
-				totalDuration = totalDuration.plus(durationBetween(startTime, localTime));
-				started = false;
+	private LocalTime getTimeToGoHome(Prestation todaysPrestation, Duration totalOvertime) {
+		if (todaysPrestation != null && todaysPrestation.getTickTimes().size() >0){
+			LocalTime firstCheckinTime = firstRegistration(todaysPrestation.getTickTimes(), todaysPrestation.getManualRegistrations());
+			LocalTime checkoutTime = firstCheckinTime.plusMinutes(minutesPerDay).plusMillis((int)middayBreak().getMillis()).minusMillis((int)totalOvertime.getMillis());
+			if (checkoutTime.isBefore(new LocalTime(14, 30))){
+				checkoutTime.minusMinutes(30);
 			}
+			return checkoutTime;
 		}
-		return totalDuration;
+		return null;
 	}
 	
-	private Duration calculateTimeOutDuringLunchHours(List<LocalTime> allRegistrations) {
-		boolean started = false;
-		boolean lunchTime = false;
-		LocalTime startTime = null;
-		for (LocalTime localTime : allRegistrations) {
-			if (!started){
-				startTime = localTime;
-				if (isInLunchHours(localTime)){
-					lunchTime = true;
-				}
-				started = true;
-			} else {
-				if (lunchTime && isInLunchHours(localTime)){
-					return durationBetween(startTime, localTime);
-				}
-				else if (!lunchTime && isInLunchHours(localTime)){
-					return durationBetween(startLunchTime, localTime);
-				} else if (lunchTime && !isInLunchHours(localTime)){
-					return durationBetween(startTime, endLunchTime);
-				}
-				started = false;
+	private List<Prestation> filterWeekDays(List<Prestation> prestations) {
+		List<Prestation> filteredList = new ArrayList<Prestation>();
+		for (Prestation prestation : prestations) {
+			if (isShown(prestation)){
+				filteredList.add(prestation);
 			}
 		}
-		return Duration.ZERO;
+		return filteredList;
 	}
-
-	private boolean isInLunchHours(LocalTime localTime) {
-
-		return localTime.isAfter(startLunchTime) && localTime.isBefore(endLunchTime);
+	
+	boolean isShown(Prestation prestation) {
+		return isWeekDay(prestation.getDay()) || (isWeekendDay(prestation.getDay()) && hasRegistrations(prestation));
 	}
-
-	private List<LocalTime> removeDuplicates(List<LocalTime> allRegistrations) {
-		List<LocalTime> filteredList = new ArrayList<LocalTime>();
-		for (LocalTime localTime : allRegistrations) {
-			if (!allReadyInList(filteredList, localTime)){
-				filteredList.add(localTime);
+	
+	private Prestation getPrestationOfToday(List<Prestation> prestations) {
+		for (Prestation prestation : prestations) {
+			if (isToday(prestation)){
+				return prestation;
 			}
 		}
-		return filteredList;
+		return null;
+	}
+	
+	private Duration calculateTotalDurationWithManualRegistrations(Duration totalDuration, LocalDate date, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
+		int totalMinutes = kernel.totalWithManualRegistrations((int) totalDuration.getStandardMinutes(), tickTimes, manualRegistrations);
+		return Duration.standardMinutes(totalMinutes);
 	}
 
-	private boolean allReadyInList(List<LocalTime> filteredList, LocalTime localTime) {
-		for (LocalTime localTimeInList : filteredList) {
-			if (localTime.isEqual(localTimeInList)){
-				return true;
-			}
-		}
-		return false;
+	private Duration middayBreak() {
+		return new Duration(minutesLunch*60*1000);
 	}
 
-	private Duration figureoutTodaysWorkingHours(Document datePage, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
+	private Duration figureoutTodaysWorkingHours(List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
 		if (registrationFound(tickTimes, manualRegistrations)){
 			LocalTime checkinTime = firstRegistration(tickTimes, manualRegistrations);
 			Duration durationUntilNowSinceCheckin = durationUntilNowSince(checkinTime);
@@ -553,7 +1108,7 @@ public class ElineFetcher implements Fetcher{
 	}
 	
 	private boolean isHoliday(String rawDayCode) {
-		return DayCode.HOLIDAY.getRawCode().equalsIgnoreCase(rawDayCode) || DayCode.CAO.getRawCode().equalsIgnoreCase(rawDayCode);
+		return DayCode.fromRawCode(rawDayCode).isHoliday();
 	}
 	
 	private Duration standardDayDuration() {
@@ -584,4 +1139,12 @@ public class ElineFetcher implements Fetcher{
 		return FETCHER_SHORT_NAME;
 	}
 
+	private interface DaySink {
+		
+		void dayFetched(DayRegistration day) throws IOException;
+		
+		void dayMissing(LocalDate date) throws IOException;
+		
+	}
+
 }
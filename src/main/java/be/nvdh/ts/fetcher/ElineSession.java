@@ -0,0 +1,284 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.joda.time.LocalDate;
+import org.joda.time.Months;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * Keeps the ASP.NET session and the form state of the registrations pages of the most recently visited months alive across fetches.
+ * Other months are navigated to again from the closest page that is kept.
+ * The session is only re-established when the server redirects away from the application or 
+ * answers without a view state.
+ */
+public class ElineSession {
+	
+	private static final String VIEWSTATE        = "__VIEWSTATE";
+	
+	private static final String MENU_TARGET 	  = "mnuHoofd";
+	private static final String MENU_REGISTRATIES = "registraties";
+	
+	private static final String REGISTRATIES_CAL_THIS_MONTH = "registraties$CalThisMonth";
+	
+	private static final String UTF_8 = "UTF-8";
+	
+	private static final int TIMEOUT = 10000;
+	private static final int MAX_NAVIGATION_STEPS = 240;
+	private static final int MAX_CALENDAR_PAGES = 3;
+	
+	private final String baseUrl;
+	private final HttpTransport transport;
+	private final FetchMetrics metrics;
+	
+	private final CookieJar cookies = new CookieJar();
+	private final Map<LocalDate, CalendarPage> calendarPages = new LinkedHashMap<LocalDate, CalendarPage>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<LocalDate, CalendarPage> eldest) {
+			return size() > MAX_CALENDAR_PAGES;
+		}
+	};
+	private boolean established;
+	
+	public ElineSession(String baseUrl, HttpTransport transport, FetchMetrics metrics) {
+		this.baseUrl = baseUrl;
+		this.transport = transport;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return the registrations page showing the month of the date, navigating the calendar to it when it was not visited before
+	 */
+	public synchronized CalendarPage calendarPage(LocalDate date, FetchContext context) throws IOException {
+		LocalDate month = date.withDayOfMonth(1);
+		CalendarPage page = calendarPages.get(month);
+		if (page == null){
+			page = navigateTo(month, context);
+			if (page == null){
+				invalidate();
+				page = navigateTo(month, context);
+				if (page == null){
+					throw new IOException("Session expired again right after logging in to " + baseUrl);
+				}
+			}
+		}
+		return page;
+	}
+	
+	public Document dayPage(LocalDate date, FetchContext context) throws IOException {
+		CalendarPage calendarPage = calendarPage(date, context);
+		Document page = post(FetchPhase.DAY_PAGE, calendarPage.getFormState(), REGISTRATIES_CAL_THIS_MONTH, dayCode(calendarPage, date), context);
+		if (page == null){
+			invalidate(calendarPage);
+			calendarPage = calendarPage(date, context);
+			page = post(FetchPhase.DAY_PAGE, calendarPage.getFormState(), REGISTRATIES_CAL_THIS_MONTH, dayCode(calendarPage, date), context);
+			if (page == null){
+				throw new IOException("Session expired again right after logging in to " + baseUrl);
+			}
+		}
+		return page;
+	}
+	
+	/**
+	 * Like {@link #dayPage(LocalDate, FetchContext)}, but the answer is streamed through a {@link DayPageScanner} instead of being parsed into a document.
+	 */
+	public DayPageScanner scannedDayPage(LocalDate date, FetchContext context) throws IOException {
+		CalendarPage calendarPage = calendarPage(date, context);
+		DayPageScanner scanner = postScanned(calendarPage.getFormState(), REGISTRATIES_CAL_THIS_MONTH, dayCode(calendarPage, date), context);
+		if (scanner == null){
+			invalidate(calendarPage);
+			calendarPage = calendarPage(date, context);
+			scanner = postScanned(calendarPage.getFormState(), REGISTRATIES_CAL_THIS_MONTH, dayCode(calendarPage, date), context);
+			if (scanner == null){
+				throw new IOException("Session expired again right after logging in to " + baseUrl);
+			}
+		}
+		return scanner;
+	}
+	
+	synchronized int calendarPageCount() {
+		return calendarPages.size();
+	}
+	
+	public synchronized void invalidate() {
+		calendarPages.clear();
+	}
+	
+	private synchronized void invalidate(CalendarPage expiredPage) {
+		if (calendarPages.get(expiredPage.getMonth()) == expiredPage){
+			invalidate();
+		}
+	}
+	
+	private String dayCode(CalendarPage calendarPage, LocalDate date) throws IOException {
+		String dayCode = calendarPage.getIndex().getDayCode(date);
+		if (dayCode == null){
+			throw new IOException("The calendar of " + calendarPage.getMonth() + " does not link " + date);
+		}
+		return dayCode;
+	}
+	
+	/**
+	 * @return the page of the month, or null when the session turned out to be expired
+	 */
+	private CalendarPage navigateTo(LocalDate month, FetchContext context) throws IOException {
+		CalendarPage page = closestPage(month, context);
+		for (int step = 0; !month.equals(page.getMonth()); step++) {
+			String navigationCode = page.getIndex().getNavigationCode(month);
+			if (navigationCode == null || step == MAX_NAVIGATION_STEPS){
+				throw new IOException("Unable to navigate the calendar from " + page.getMonth() + " to " + month);
+			}
+			Document document = post(FetchPhase.REGISTRATIONS_PAGE, page.getFormState(), REGISTRATIES_CAL_THIS_MONTH, navigationCode, context);
+			if (document == null){
+				return null;
+			}
+			page = register(document);
+		}
+		return page;
+	}
+	
+	private CalendarPage closestPage(LocalDate month, FetchContext context) throws IOException {
+		if (calendarPages.isEmpty()){
+			return establish(context);
+		}
+		CalendarPage closestPage = null;
+		int closestDistance = Integer.MAX_VALUE;
+		for (CalendarPage page : calendarPages.values()) {
+			int distance = Math.abs(Months.monthsBetween(page.getMonth(), month).getMonths());
+			if (distance < closestDistance){
+				closestDistance = distance;
+				closestPage = page;
+			}
+		}
+		return closestPage;
+	}
+	
+	private CalendarPage register(Document document) throws IOException {
+		CalendarPage page = new CalendarPage(document, REGISTRATIES_CAL_THIS_MONTH);
+		if (page.getMonth() == null){
+			throw new IOException("No calendar found on the registrations page of " + baseUrl);
+		}
+		calendarPages.put(page.getMonth(), page);
+		return page;
+	}
+	
+	private CalendarPage establish(FetchContext context) throws IOException {
+		cookies.clear();
+		metrics.sessionEstablished(established);
+		established = true;
+		Document homePage = fetchHomePage(context);
+		if (!hasViewState(homePage)){
+			throw new IOException("No view state found on home page " + baseUrl);
+		}
+		Document page = post(FetchPhase.REGISTRATIONS_PAGE, FormState.capture(homePage), MENU_TARGET, MENU_REGISTRATIES, context);
+		if (page == null){
+			throw new IOException("Unable to open the registrations page on " + baseUrl);
+		}
+		return register(page);
+	}
+	
+	private Document fetchHomePage(FetchContext context) throws IOException {
+		long startNanos = System.nanoTime();
+		TransportResponse response = transport.get(baseUrl, cookies, context.timeoutMillis(TIMEOUT), context);
+		long parseStartNanos = System.nanoTime();
+		int viewStateLength = 0;
+		try {
+			Document page = parse(response);
+			viewStateLength = viewStateLength(page);
+			return page;
+		} finally {
+			response.close();
+			record(FetchPhase.HOME_PAGE, startNanos, parseStartNanos, response, viewStateLength);
+		}
+	}
+	
+	/**
+	 * @return the resulting page, or null when the session turned out to be expired
+	 */
+	private Document post(FetchPhase phase, FormState formState, String eventTarget, String eventArgument, FetchContext context) throws IOException {
+		long startNanos = System.nanoTime();
+		TransportResponse response = transport.post(baseUrl, formState.postback(eventTarget, eventArgument), cookies, context.timeoutMillis(TIMEOUT), context);
+		long parseStartNanos = System.nanoTime();
+		int viewStateLength = 0;
+		try {
+			Document page = parse(response);
+			viewStateLength = viewStateLength(page);
+			if (isRedirectedAway(response) || !hasViewState(page)){
+				return null;
+			}
+			return page;
+		} finally {
+			response.close();
+			record(phase, startNanos, parseStartNanos, response, viewStateLength);
+		}
+	}
+	
+	/**
+	 * @return the scanned page, or null when the session turned out to be expired
+	 */
+	private DayPageScanner postScanned(FormState formState, String eventTarget, String eventArgument, FetchContext context) throws IOException {
+		long startNanos = System.nanoTime();
+		TransportResponse response = transport.post(baseUrl, formState.postback(eventTarget, eventArgument), cookies, context.timeoutMillis(TIMEOUT), context);
+		long parseStartNanos = System.nanoTime();
+		int viewStateLength = 0;
+		try {
+			DayPageScanner scanner = new DayPageScanner(new DayPageExtractor());
+			scanner.scan(new InputStreamReader(response.getBody(), charset(response)));
+			viewStateLength = scanner.getViewStateLength();
+			if (isRedirectedAway(response) || !scanner.hasViewState()){
+				return null;
+			}
+			return scanner;
+		} finally {
+			response.close();
+			record(FetchPhase.DAY_PAGE, startNanos, parseStartNanos, response, viewStateLength);
+		}
+	}
+	
+	private void record(FetchPhase phase, long startNanos, long parseStartNanos, TransportResponse response, int viewStateLength) {
+		long endNanos = System.nanoTime();
+		metrics.phaseCompleted(FetchPhase.PARSE, endNanos - parseStartNanos);
+		metrics.phaseCompleted(phase, endNanos - startNanos);
+		metrics.responseReceived(response.getBytesReceived(), viewStateLength);
+	}
+	
+	private Document parse(TransportResponse response) throws IOException {
+		return Jsoup.parse(response.getBody(), response.getCharset(), baseUrl);
+	}
+	
+	private Charset charset(TransportResponse response) {
+		String charset = response.getCharset();
+		return charset != null && Charset.isSupported(charset) ? Charset.forName(charset) : Charset.forName(UTF_8);
+	}
+	
+	private boolean isRedirectedAway(TransportResponse response) throws MalformedURLException {
+		return !new URL(baseUrl).getPath().equalsIgnoreCase(response.getUrl().getPath());
+	}
+	
+	private boolean hasViewState(Document document) {
+		return document.getElementById(VIEWSTATE) != null;
+	}
+	
+	private int viewStateLength(Document document) {
+		return scrapeViewState(document).length();
+	}
+
+	private String scrapeViewState(Document document) {
+		return scrapeValueFromElement(VIEWSTATE, document);
+	}
+	
+	private String scrapeValueFromElement(String name, Document document) {
+		Element element = document.getElementById(name);
+		return element != null ? element.attr("value") : "";
+	}
+
+}
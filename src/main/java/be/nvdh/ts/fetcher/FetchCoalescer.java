@@ -0,0 +1,100 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.exception.FetchException;
+
+/**
+ * Lets concurrent callers asking for the same key share a single fetch, run on the thread of the first caller.
+ * A successful result keeps being handed out for the reuse time after it completed; failures are never reused.
+ */
+public class FetchCoalescer {
+	
+	private final long reuseMillis;
+	private final ConcurrentMap<Object, Flight> flights = new ConcurrentHashMap<Object, Flight>();
+	
+	public FetchCoalescer(long reuseMillis) {
+		this.reuseMillis = reuseMillis;
+	}
+	
+	public FetchResult fetch(Object key, Callable<FetchResult> fetch) throws FetchException {
+		Flight flight = flights.get(key);
+		if (flight != null && flight.isExpired(System.currentTimeMillis())){
+			flights.remove(key, flight);
+			flight = null;
+		}
+		if (flight == null){
+			Flight newFlight = new Flight(fetch);
+			flight = flights.putIfAbsent(key, newFlight);
+			if (flight == null){
+				flight = newFlight;
+				removeExpiredFlights();
+				run(key, newFlight);
+			}
+		}
+		return flight.await();
+	}
+	
+	private void run(Object key, Flight flight) {
+		flight.task.run();
+		flight.completedAt = System.currentTimeMillis();
+		if (reuseMillis <= 0 || flight.failed()){
+			flights.remove(key, flight);
+		}
+	}
+	
+	private void removeExpiredFlights() {
+		long now = System.currentTimeMillis();
+		Iterator<Flight> iterator = flights.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isExpired(now)){
+				iterator.remove();
+			}
+		}
+	}
+	
+	private class Flight {
+		
+		private final FutureTask<FetchResult> task;
+		private volatile long completedAt;
+		
+		Flight(Callable<FetchResult> fetch) {
+			this.task = new FutureTask<FetchResult>(fetch);
+		}
+		
+		boolean isExpired(long now) {
+			return completedAt != 0 && now - completedAt > reuseMillis;
+		}
+		
+		boolean failed() {
+			try {
+				task.get();
+				return false;
+			} catch (Exception e) {
+				return true;
+			}
+		}
+		
+		FetchResult await() throws FetchException {
+			try {
+				return task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new FetchException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof FetchException){
+					throw (FetchException) e.getCause();
+				}
+				throw new FetchException(e.getCause());
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,99 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deadline and cancellation state shared by all requests of one fetch.
+ * Every request gets at most the time left until the deadline, and cancelling aborts the requests that are still in flight.
+ */
+public class FetchContext {
+	
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
+	
+	private final long deadlineNanos;
+	private final Set<Closeable> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<Closeable, Boolean>());
+	private volatile boolean cancelled;
+	
+	private FetchContext(long deadlineNanos) {
+		this.deadlineNanos = deadlineNanos;
+	}
+	
+	public static FetchContext unbounded() {
+		return new FetchContext(NO_DEADLINE);
+	}
+	
+	public static FetchContext withTimeout(long timeoutMillis) {
+		return new FetchContext(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+	}
+	
+	/**
+	 * @return the timeout for the next request: the maximum, or less when the deadline is nearer
+	 */
+	public int timeoutMillis(int maxTimeoutMillis) throws IOException {
+		check();
+		if (deadlineNanos == NO_DEADLINE){
+			return maxTimeoutMillis;
+		}
+		long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+		return (int) Math.max(1, Math.min(maxTimeoutMillis, remainingMillis));
+	}
+	
+	public void check() throws IOException {
+		if (cancelled){
+			throw new InterruptedIOException("Fetch cancelled");
+		}
+		if (deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos >= 0){
+			throw new SocketTimeoutException("Fetch deadline exceeded");
+		}
+	}
+	
+	/**
+	 * @return the time left until the deadline, rounded up so that waiting that long does not wake up just before it
+	 */
+	public long remainingMillis() {
+		if (deadlineNanos == NO_DEADLINE){
+			return Long.MAX_VALUE;
+		}
+		return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+	}
+	
+	/**
+	 * Registers the way to abort a request in flight; it is closed right away when the fetch is already cancelled.
+	 */
+	public void register(Closeable abort) throws IOException {
+		inFlight.add(abort);
+		if (cancelled){
+			unregister(abort);
+			abort.close();
+			check();
+		}
+	}
+	
+	public void unregister(Closeable abort) {
+		inFlight.remove(abort);
+	}
+	
+	public void cancel() {
+		cancelled = true;
+		for (Closeable abort : inFlight) {
+			try {
+				abort.close();
+			} catch (IOException e) {
+				// the request fails on its own thread
+			}
+		}
+		inFlight.clear();
+	}
+	
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+}
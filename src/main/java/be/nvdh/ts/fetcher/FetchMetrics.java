@@ -0,0 +1,41 @@
+package be.nvdh.ts.fetcher;
+
+/**
+ * Receives the timings and counts of the fetch pipeline. It is called on the fetching threads, so implementations must be thread-safe and cheap.
+ */
+public interface FetchMetrics {
+	
+	FetchMetrics DISABLED = new FetchMetrics() {
+		public void phaseCompleted(FetchPhase phase, long nanos) {
+		}
+		public void responseReceived(long bytes, int viewStateLength) {
+		}
+		public void dayRetried() {
+		}
+		public void dayHedged() {
+		}
+		public void dayMissing() {
+		}
+		public void sessionEstablished(boolean relogin) {
+		}
+	};
+	
+	void phaseCompleted(FetchPhase phase, long nanos);
+	
+	/**
+	 * @param viewStateLength the length of the __VIEWSTATE of the page, 0 when it has none
+	 */
+	void responseReceived(long bytes, int viewStateLength);
+	
+	void dayRetried();
+	
+	void dayHedged();
+	
+	void dayMissing();
+	
+	/**
+	 * @param relogin true when the session logged in again after it expired
+	 */
+	void sessionEstablished(boolean relogin);
+
+}
@@ -0,0 +1,25 @@
+package be.nvdh.ts.fetcher;
+
+/**
+ * The timed phases of a fetch. The request phases run from sending the request until its response is read;
+ * {@link #PARSE} is the part of them spent reading and parsing the body, which streams in while it is parsed.
+ */
+public enum FetchPhase {
+	
+	HOME_PAGE("HomePage"),
+	REGISTRATIONS_PAGE("RegistrationsPage"),
+	DAY_PAGE("DayPage"),
+	PARSE("Parse"),
+	CALCULATION("Calculation");
+	
+	private final String attributeName;
+	
+	private FetchPhase(String attributeName) {
+		this.attributeName = attributeName;
+	}
+	
+	public String getAttributeName() {
+		return attributeName;
+	}
+
+}
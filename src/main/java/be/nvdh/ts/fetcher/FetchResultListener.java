@@ -0,0 +1,12 @@
+package be.nvdh.ts.fetcher;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.exception.FetchException;
+
+public interface FetchResultListener {
+	
+	void resultFetched(FetchResult result);
+	
+	void fetchFailed(FetchException exception);
+
+}
@@ -0,0 +1,57 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * The __VIEWSTATE and __EVENTVALIDATION fields of a page, scraped and URL-encoded once.
+ * A postback body is a copy of those bytes with only the encoded event target and argument appended.
+ */
+public class FormState {
+
+	private static final String EVENTARGUMENT    = "__EVENTARGUMENT";
+	private static final String EVENTTARGET      = "__EVENTTARGET";
+	private static final String EVENTVALIDATION  = "__EVENTVALIDATION";
+	private static final String VIEWSTATE        = "__VIEWSTATE";
+
+	private static final String UTF_8 = "UTF-8";
+
+	private final byte[] encodedFields;
+	private final int viewStateLength;
+
+	private FormState(byte[] encodedFields, int viewStateLength) {
+		this.encodedFields = encodedFields;
+		this.viewStateLength = viewStateLength;
+	}
+
+	public static FormState capture(Document document) throws UnsupportedEncodingException {
+		String viewState = scrapeValueFromElement(VIEWSTATE, document);
+		String eventValidation = scrapeValueFromElement(EVENTVALIDATION, document);
+		StringBuilder fields = new StringBuilder(viewState.length() + eventValidation.length() + 64);
+		fields.append(VIEWSTATE).append('=').append(URLEncoder.encode(viewState, UTF_8));
+		fields.append('&').append(EVENTVALIDATION).append('=').append(URLEncoder.encode(eventValidation, UTF_8));
+		return new FormState(fields.toString().getBytes(UTF_8), viewState.length());
+	}
+
+	public byte[] postback(String eventTarget, String eventArgument) throws UnsupportedEncodingException {
+		byte[] event = ("&" + EVENTTARGET + "=" + URLEncoder.encode(eventTarget, UTF_8)
+				+ "&" + EVENTARGUMENT + "=" + URLEncoder.encode(eventArgument, UTF_8)).getBytes(UTF_8);
+		byte[] body = Arrays.copyOf(encodedFields, encodedFields.length + event.length);
+		System.arraycopy(event, 0, body, encodedFields.length, event.length);
+		return body;
+	}
+
+	public int getViewStateLength() {
+		return viewStateLength;
+	}
+
+	private static String scrapeValueFromElement(String name, Document document) {
+		Element element = document.getElementById(name);
+		return element != null ? element.attr("value") : "";
+	}
+
+}
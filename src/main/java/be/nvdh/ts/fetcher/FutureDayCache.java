@@ -0,0 +1,71 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.LocalDate;
+
+/**
+ * In-memory store of day pages after today, kept for the time to live after they were fetched.
+ * Planned leave can still change those days, so they are not written to the durable day cache.
+ * A time to live of zero keeps nothing.
+ */
+public class FutureDayCache {
+	
+	private final long ttlMillis;
+	private final ConcurrentMap<Object, Entry> days = new ConcurrentHashMap<Object, Entry>();
+	
+	public FutureDayCache(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+	
+	public DayRegistration get(Account account, LocalDate date) {
+		Object key = Arrays.asList(account, date);
+		Entry entry = days.get(key);
+		if (entry == null){
+			return null;
+		}
+		if (entry.isExpired(System.currentTimeMillis())){
+			days.remove(key, entry);
+			return null;
+		}
+		return entry.day;
+	}
+	
+	public void put(Account account, DayRegistration day) {
+		if (ttlMillis <= 0){
+			return;
+		}
+		removeExpiredDays();
+		days.put(Arrays.asList(account, day.getDate()), new Entry(day, System.currentTimeMillis()));
+	}
+	
+	private void removeExpiredDays() {
+		long now = System.currentTimeMillis();
+		Iterator<Entry> iterator = days.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isExpired(now)){
+				iterator.remove();
+			}
+		}
+	}
+	
+	private class Entry {
+		
+		private final DayRegistration day;
+		private final long fetchedAt;
+		
+		Entry(DayRegistration day, long fetchedAt) {
+			this.day = day;
+			this.fetchedAt = fetchedAt;
+		}
+		
+		boolean isExpired(long now) {
+			return now - fetchedAt >= ttlMillis;
+		}
+		
+	}
+
+}
@@ -0,0 +1,402 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.Days;
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+import be.nvdh.ts.domain.Prestation;
+
+/**
+ * Append-only store of the prestations of closed days, in fixed-width binary records read through a memory-mapped file.
+ * A day stored again gets a new record that hides the older one. Registrations are kept as minutes of the day, up to
+ * {@link #MAX_TICKS} clock and {@link #MAX_MANUAL} manual registrations; the day code is kept as a {@link DayCode}.
+ * The text of irregularities and day codes that are not exactly a known {@link DayCode} go to a side file of text lines per record.
+ * Days with more registrations than fit, or whose text is missing, still count in the totals but are not rebuilt.
+ * The file is locked while the store is open, so every history file has one store at a time.
+ */
+public class HistoryStore implements Closeable {
+	
+	public static final int MAX_TICKS  = 24;
+	public static final int MAX_MANUAL = 8;
+	
+	private static final int MAGIC   = 0x54534831;
+	private static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE   = 16;
+	private static final int COUNT_OFFSET  = 12;
+	private static final int RECORD_SIZE   = 20 + 2 * (MAX_TICKS + MAX_MANUAL);
+	private static final int MIN_CAPACITY  = 64 * 1024;
+	
+	private static final int DAY_OFFSET      = 0;
+	private static final int TOTAL_OFFSET    = 4;
+	private static final int NEEDED_OFFSET   = 8;
+	private static final int OVERTIME_OFFSET = 12;
+	private static final int CODE_OFFSET     = 16;
+	private static final int FLAGS_OFFSET    = 17;
+	private static final int TICKS_OFFSET    = 18;
+	private static final int MANUAL_OFFSET   = 19;
+	private static final int MINUTES_OFFSET  = 20;
+	
+	private static final int FLAG_IRREGULARITIES = 1;
+	private static final int FLAG_TRUNCATED      = 2;
+	private static final int FLAG_TEXT           = 4;
+	
+	private static final String TEXT_EXTENSION  = ".text";
+	private static final String TEXT_SEPARATOR  = "\t";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
+	private static final DayCode[] DAY_CODES = DayCode.values();
+	
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private MappedByteBuffer records;
+	private int count;
+	
+	private final File textFile;
+	private final Map<Integer, String[]> texts = new HashMap<Integer, String[]>();
+	private Writer textWriter;
+	
+	private int firstDay;
+	private int[] index = new int[0];
+	
+	public HistoryStore(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()){
+			throw new IOException("Unable to create history directory " + directory);
+		}
+		this.file = new RandomAccessFile(file, "rw");
+		this.channel = this.file.getChannel();
+		lock(file);
+		boolean created = channel.size() == 0;
+		map(Math.max(MIN_CAPACITY, channel.size()));
+		if (created){
+			records.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(COUNT_OFFSET, 0);
+		} else if (records.getInt(0) != MAGIC || records.getInt(4) != VERSION || records.getInt(8) != RECORD_SIZE){
+			close();
+			throw new IOException(file + " is not a history store of version " + VERSION);
+		}
+		count = records.getInt(COUNT_OFFSET);
+		for (int record = 0; record < count; record++) {
+			index(records.getInt(position(record) + DAY_OFFSET), record);
+		}
+		textFile = new File(file.getPath() + TEXT_EXTENSION);
+		loadTexts();
+	}
+	
+	public synchronized boolean contains(LocalDate date) {
+		return record(epochDay(date)) >= 0;
+	}
+	
+	/**
+	 * @return whether all dates are stored and can be rebuilt as they were fetched
+	 */
+	public synchronized boolean containsAll(List<LocalDate> dates) {
+		for (LocalDate date : dates) {
+			int record = record(epochDay(date));
+			if (record < 0 || !isComplete(record)){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	public synchronized int size() {
+		return count;
+	}
+	
+	/**
+	 * @param day the registrations the prestation was calculated from
+	 */
+	public synchronized void append(DayRegistration day, Prestation prestation) throws IOException {
+		if (position(count + 1) > records.capacity()){
+			map(2L * records.capacity());
+		}
+		int position = position(count);
+		List<LocalTime> ticks = nonNull(day.getTickTimes());
+		List<LocalTime> manual = nonNull(day.getManualRegistrations());
+		int tickCount = Math.min(ticks.size(), MAX_TICKS);
+		int manualCount = Math.min(manual.size(), MAX_MANUAL);
+		String rawDayCode = day.getRawDayCode() != null ? day.getRawDayCode() : "";
+		String irregularities = day.getIrregularities() != null ? day.getIrregularities() : "";
+		DayCode dayCode = DayCode.fromRawCode(rawDayCode);
+		int flags = hasText(irregularities) ? FLAG_IRREGULARITIES : 0;
+		if (tickCount < ticks.size() || manualCount < manual.size()){
+			flags |= FLAG_TRUNCATED;
+		}
+		if (hasText(irregularities) || dayCode == DayCode.UNKNOWN || !dayCode.getRawCode().equals(rawDayCode)){
+			appendText(count, rawDayCode, irregularities);
+			flags |= FLAG_TEXT;
+		}
+		int epochDay = epochDay(day.getDate());
+		records.putInt(position + DAY_OFFSET, epochDay);
+		records.putInt(position + TOTAL_OFFSET, seconds(prestation.getDuration()));
+		records.putInt(position + NEEDED_OFFSET, seconds(prestation.getDuration().minus(prestation.getOvertime())));
+		records.putInt(position + OVERTIME_OFFSET, seconds(prestation.getOvertime()));
+		records.put(position + CODE_OFFSET, (byte) dayCode.ordinal());
+		records.put(position + FLAGS_OFFSET, (byte) flags);
+		records.put(position + TICKS_OFFSET, (byte) tickCount);
+		records.put(position + MANUAL_OFFSET, (byte) manualCount);
+		int minutes = position + MINUTES_OFFSET;
+		for (int i = 0; i < tickCount; i++) {
+			records.putShort(minutes + 2 * i, (short) TimesheetKernel.minuteOfDay(ticks.get(i)));
+		}
+		for (int i = 0; i < manualCount; i++) {
+			records.putShort(minutes + 2 * (MAX_TICKS + i), (short) TimesheetKernel.minuteOfDay(manual.get(i)));
+		}
+		records.putInt(COUNT_OFFSET, count + 1);
+		index(epochDay, count++);
+	}
+	
+	/**
+	 * @return the prestation as it was stored last, or null when the day is not stored
+	 */
+	public synchronized Prestation get(LocalDate date) {
+		int record = record(epochDay(date));
+		return record >= 0 ? prestation(date, record) : null;
+	}
+	
+	/**
+	 * @return the stored prestations of the dates, in the same order, skipping the dates that are not stored
+	 */
+	public synchronized List<Prestation> get(List<LocalDate> dates) {
+		List<Prestation> prestations = new ArrayList<Prestation>(dates.size());
+		for (LocalDate date : dates) {
+			int record = record(epochDay(date));
+			if (record >= 0){
+				prestations.add(prestation(date, record));
+			}
+		}
+		return prestations;
+	}
+	
+	/**
+	 * Adds the stored days to the columns straight from their records, without rebuilding prestations.
+	 * Like the fetcher, weekend days without registrations are left out.
+	 */
+	synchronized void addTo(PrestationColumns columns, List<LocalDate> dates) {
+		for (LocalDate date : dates) {
+			int record = record(epochDay(date));
+			if (record < 0){
+				continue;
+			}
+			int position = position(record);
+			boolean weekend = date.getDayOfWeek() == DateTimeConstants.SATURDAY || date.getDayOfWeek() == DateTimeConstants.SUNDAY;
+			if (!weekend || records.get(position + TICKS_OFFSET) + records.get(position + MANUAL_OFFSET) > 0){
+				columns.add(records.getInt(position + DAY_OFFSET), records.getInt(position + TOTAL_OFFSET), records.getInt(position + OVERTIME_OFFSET),
+						DAY_CODES[records.get(position + CODE_OFFSET)], (records.get(position + FLAGS_OFFSET) & FLAG_IRREGULARITIES) != 0);
+			}
+		}
+	}
+	
+	/**
+	 * @return the time and overtime of the stored days between both dates, inclusive
+	 */
+	public synchronized PrestationTotals totals(LocalDate from, LocalDate to) {
+		PrestationTotals totals = new PrestationTotals();
+		int lastDay = epochDay(to);
+		for (int day = Math.max(epochDay(from), firstDay); day <= lastDay && day - firstDay < index.length; day++) {
+			int record = index[day - firstDay] - 1;
+			if (record >= 0){
+				int position = position(record);
+				totals.add(records.getInt(position + TOTAL_OFFSET) * 1000L, records.getInt(position + OVERTIME_OFFSET) * 1000L);
+			}
+		}
+		return totals;
+	}
+	
+	public synchronized void flush() throws IOException {
+		if (textWriter != null){
+			textWriter.flush();
+		}
+		records.force();
+	}
+	
+	public synchronized void close() throws IOException {
+		try {
+			if (textWriter != null){
+				textWriter.close();
+			}
+			if (records != null){
+				records.force();
+			}
+		} finally {
+			file.close();
+		}
+	}
+	
+	private Prestation prestation(LocalDate date, int record) {
+		int position = position(record);
+		DayCode dayCode = DAY_CODES[records.get(position + CODE_OFFSET)];
+		int flags = records.get(position + FLAGS_OFFSET);
+		Duration total = Duration.standardSeconds(records.getInt(position + TOTAL_OFFSET));
+		Duration needed = Duration.standardSeconds(records.getInt(position + NEEDED_OFFSET));
+		Duration overtime = Duration.standardSeconds(records.getInt(position + OVERTIME_OFFSET));
+		List<LocalTime> ticks = times(position + MINUTES_OFFSET, records.get(position + TICKS_OFFSET));
+		List<LocalTime> manual = times(position + MINUTES_OFFSET + 2 * MAX_TICKS, records.get(position + MANUAL_OFFSET));
+		String[] text = (flags & FLAG_TEXT) != 0 ? texts.get(record) : null;
+		String rawDayCode = text != null ? text[0] : dayCode.getRawCode();
+		String irregularities = text != null ? text[1] : "";
+		return new Prestation(date, total, needed, overtime, null, ticks, manual, rawDayCode, irregularities, comment(irregularities, rawDayCode));
+	}
+	
+	private List<LocalTime> times(int position, int count) {
+		List<LocalTime> times = new ArrayList<LocalTime>(count);
+		for (int i = 0; i < count; i++) {
+			int minuteOfDay = records.getShort(position + 2 * i);
+			times.add(new LocalTime(minuteOfDay / 60, minuteOfDay % 60));
+		}
+		return times;
+	}
+	
+	/**
+	 * The same comment the fetcher gives a prestation.
+	 */
+	private String comment(String irregularities, String rawDayCode) {
+		if (hasText(irregularities)){
+			return irregularities;
+		} else if (DayCode.fromRawCode(rawDayCode).isHoliday()){
+			return "Holiday";
+		}
+		return rawDayCode;
+	}
+	
+	/**
+	 * A record can be rebuilt when none of its registrations were dropped and its text, if it needs any, was kept.
+	 */
+	private boolean isComplete(int record) {
+		int flags = records.get(position(record) + FLAGS_OFFSET);
+		if ((flags & FLAG_TRUNCATED) != 0){
+			return false;
+		}
+		return (flags & FLAG_TEXT) == 0 || texts.containsKey(record);
+	}
+	
+	private void loadTexts() throws IOException {
+		if (!textFile.exists()){
+			return;
+		}
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(textFile), UTF_8));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = StringUtils.splitPreserveAllTokens(line, TEXT_SEPARATOR);
+				if (fields.length == 3 && StringUtils.isNumeric(fields[0])){
+					texts.put(Integer.valueOf(fields[0]), new String[] { fields[1], fields[2] });
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Written before the record itself; a line left behind by a record that never made it is replaced by the next record with that number.
+	 */
+	private void appendText(int record, String rawDayCode, String irregularities) throws IOException {
+		if (textWriter == null){
+			textWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(textFile, true), UTF_8));
+		}
+		String[] text = new String[] { singleLine(rawDayCode), singleLine(irregularities) };
+		textWriter.write(record + TEXT_SEPARATOR + text[0] + TEXT_SEPARATOR + text[1] + "\n");
+		textWriter.flush();
+		texts.put(record, text);
+	}
+	
+	private static String singleLine(String text) {
+		return StringUtils.replaceChars(text, "\t\r\n", "   ");
+	}
+	
+	/**
+	 * Only one store at a time may append to the file, in this process or any other; the lock goes with the channel on close.
+	 */
+	private void lock(File file) throws IOException {
+		FileLock lock;
+		try {
+			lock = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if (lock == null){
+			this.file.close();
+			throw new IOException(file + " is in use by another history store");
+		}
+	}
+	
+	private void map(long capacity) throws IOException {
+		MappedByteBuffer previous = records;
+		records = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		if (previous != null){
+			previous.force();
+		}
+	}
+	
+	private int record(int day) {
+		int slot = day - firstDay;
+		return slot >= 0 && slot < index.length ? index[slot] - 1 : -1;
+	}
+	
+	/**
+	 * The index holds, per day from the first stored day on, the number of its last record plus one.
+	 */
+	private void index(int day, int record) {
+		if (index.length == 0){
+			firstDay = day;
+			index = new int[1];
+		} else if (day < firstDay){
+			int[] grown = new int[index.length + firstDay - day];
+			System.arraycopy(index, 0, grown, firstDay - day, index.length);
+			index = grown;
+			firstDay = day;
+		} else if (day - firstDay >= index.length){
+			index = Arrays.copyOf(index, day - firstDay + 1);
+		}
+		index[day - firstDay] = record + 1;
+	}
+	
+	private static int position(int record) {
+		return HEADER_SIZE + record * RECORD_SIZE;
+	}
+	
+	private static int epochDay(LocalDate date) {
+		return Days.daysBetween(EPOCH, date).getDays();
+	}
+	
+	private static int seconds(Duration duration) {
+		return (int) duration.getStandardSeconds();
+	}
+	
+	private static boolean hasText(String text) {
+		return text != null && !text.trim().isEmpty();
+	}
+	
+	private static List<LocalTime> nonNull(List<LocalTime> times) {
+		return times != null ? times : new ArrayList<LocalTime>();
+	}
+
+}
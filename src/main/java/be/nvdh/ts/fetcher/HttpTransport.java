@@ -0,0 +1,16 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.IOException;
+
+/**
+ * Carries the requests of an {@link ElineSession} to the server.
+ * Implementations are shared between sessions and must be thread-safe; the cookies belong to the session.
+ * A request takes at most the given timeout and is aborted when its {@link FetchContext} gets cancelled.
+ */
+public interface HttpTransport {
+	
+	TransportResponse get(String url, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException;
+	
+	TransportResponse post(String url, byte[] formBody, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException;
+
+}
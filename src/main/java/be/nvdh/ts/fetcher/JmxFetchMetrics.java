@@ -0,0 +1,246 @@
+package be.nvdh.ts.fetcher;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Keeps the fetch metrics in counters that are exposed as attributes of an MBean named be.nvdh.ts.fetcher:type=FetchMetrics,name=...
+ * Every phase gets a Count, TotalMillis, MaxMillis and AverageMillis attribute, prefixed with its {@link FetchPhase#getAttributeName() name}.
+ */
+public class JmxFetchMetrics implements FetchMetrics, DynamicMBean {
+	
+	private static final String DOMAIN = "be.nvdh.ts.fetcher";
+	private static final String RESET  = "reset";
+	
+	private static final String COUNT          = "Count";
+	private static final String TOTAL_MILLIS   = "TotalMillis";
+	private static final String MAX_MILLIS     = "MaxMillis";
+	private static final String AVERAGE_MILLIS = "AverageMillis";
+	
+	private static final String[] COUNTERS = {"Responses", "BytesReceived", "ViewStateAverageLength", "ViewStateMaxLength", "Retries", "Hedges", "MissingDays", "Logins", "Relogins"};
+	
+	private final LongAdder[] phaseCounts = adders(FetchPhase.values().length);
+	private final LongAdder[] phaseNanos = adders(FetchPhase.values().length);
+	private final AtomicLong[] phaseMaxNanos = new AtomicLong[FetchPhase.values().length];
+	
+	private final LongAdder responses = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder viewStateLength = new LongAdder();
+	private final AtomicLong viewStateMaxLength = new AtomicLong();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder hedges = new LongAdder();
+	private final LongAdder missingDays = new LongAdder();
+	private final LongAdder logins = new LongAdder();
+	private final LongAdder relogins = new LongAdder();
+	
+	private ObjectName objectName;
+	
+	public JmxFetchMetrics() {
+		for (int i = 0; i < phaseMaxNanos.length; i++) {
+			phaseMaxNanos[i] = new AtomicLong();
+		}
+	}
+	
+	/**
+	 * Registers new metrics with the platform MBean server, under the given name or, when that is taken, the name with a number appended.
+	 */
+	public static JmxFetchMetrics register(String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		JmxFetchMetrics metrics = new JmxFetchMetrics();
+		for (int number = 1; ; number++) {
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=FetchMetrics,name=" + (number == 1 ? name : name + "-" + number));
+			try {
+				server.registerMBean(metrics, objectName);
+				metrics.objectName = objectName;
+				return metrics;
+			} catch (InstanceAlreadyExistsException e) {
+				// try the next name
+			}
+		}
+	}
+	
+	public void unregister() throws JMException {
+		if (objectName != null){
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			objectName = null;
+		}
+	}
+
+	public void phaseCompleted(FetchPhase phase, long nanos) {
+		int index = phase.ordinal();
+		phaseCounts[index].increment();
+		phaseNanos[index].add(nanos);
+		max(phaseMaxNanos[index], nanos);
+	}
+
+	public void responseReceived(long bytes, int viewStateLength) {
+		responses.increment();
+		bytesReceived.add(bytes);
+		this.viewStateLength.add(viewStateLength);
+		max(viewStateMaxLength, viewStateLength);
+	}
+
+	public void dayRetried() {
+		retries.increment();
+	}
+
+	public void dayHedged() {
+		hedges.increment();
+	}
+
+	public void dayMissing() {
+		missingDays.increment();
+	}
+
+	public void sessionEstablished(boolean relogin) {
+		logins.increment();
+		if (relogin){
+			relogins.increment();
+		}
+	}
+	
+	public long getCount(FetchPhase phase) {
+		return phaseCounts[phase.ordinal()].sum();
+	}
+	
+	public long getTotalNanos(FetchPhase phase) {
+		return phaseNanos[phase.ordinal()].sum();
+	}
+	
+	public long getMaxNanos(FetchPhase phase) {
+		return phaseMaxNanos[phase.ordinal()].get();
+	}
+	
+	public void reset() {
+		for (int i = 0; i < phaseMaxNanos.length; i++) {
+			phaseCounts[i].reset();
+			phaseNanos[i].reset();
+			phaseMaxNanos[i].set(0);
+		}
+		for (LongAdder counter : new LongAdder[]{responses, bytesReceived, viewStateLength, retries, hedges, missingDays, logins, relogins}) {
+			counter.reset();
+		}
+		viewStateMaxLength.set(0);
+	}
+
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		for (FetchPhase phase : FetchPhase.values()) {
+			if (attribute.startsWith(phase.getAttributeName())){
+				String statistic = attribute.substring(phase.getAttributeName().length());
+				if (COUNT.equals(statistic)){
+					return getCount(phase);
+				} else if (TOTAL_MILLIS.equals(statistic)){
+					return TimeUnit.NANOSECONDS.toMillis(getTotalNanos(phase));
+				} else if (MAX_MILLIS.equals(statistic)){
+					return TimeUnit.NANOSECONDS.toMillis(getMaxNanos(phase));
+				} else if (AVERAGE_MILLIS.equals(statistic)){
+					return average(getTotalNanos(phase), getCount(phase)) / TimeUnit.MILLISECONDS.toNanos(1);
+				}
+			}
+		}
+		if ("Responses".equals(attribute)){
+			return responses.sum();
+		} else if ("BytesReceived".equals(attribute)){
+			return bytesReceived.sum();
+		} else if ("ViewStateAverageLength".equals(attribute)){
+			return average(viewStateLength.sum(), responses.sum());
+		} else if ("ViewStateMaxLength".equals(attribute)){
+			return viewStateMaxLength.get();
+		} else if ("Retries".equals(attribute)){
+			return retries.sum();
+		} else if ("Hedges".equals(attribute)){
+			return hedges.sum();
+		} else if ("MissingDays".equals(attribute)){
+			return missingDays.sum();
+		} else if ("Logins".equals(attribute)){
+			return logins.sum();
+		} else if ("Relogins".equals(attribute)){
+			return relogins.sum();
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+	}
+
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for (String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			} catch (AttributeNotFoundException e) {
+				// left out, as the contract of getAttributes allows
+			}
+		}
+		return list;
+	}
+
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		if (RESET.equals(actionName)){
+			reset();
+			return null;
+		}
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+		for (FetchPhase phase : FetchPhase.values()) {
+			attributes.add(attribute(phase.getAttributeName() + COUNT, Long.class));
+			attributes.add(attribute(phase.getAttributeName() + TOTAL_MILLIS, Long.class));
+			attributes.add(attribute(phase.getAttributeName() + MAX_MILLIS, Long.class));
+			attributes.add(attribute(phase.getAttributeName() + AVERAGE_MILLIS, Double.class));
+		}
+		for (String counter : COUNTERS) {
+			attributes.add(attribute(counter, counter.endsWith("AverageLength") ? Double.class : Long.class));
+		}
+		MBeanOperationInfo reset = new MBeanOperationInfo(RESET, "Sets all metrics back to zero", null, "void", MBeanOperationInfo.ACTION);
+		return new MBeanInfo(getClass().getName(), "Timings and counts of the fetch pipeline", attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[]{reset}, null);
+	}
+	
+	private MBeanAttributeInfo attribute(String name, Class<?> type) {
+		return new MBeanAttributeInfo(name, type.getName(), name, true, false, false);
+	}
+	
+	private static double average(long total, long count) {
+		return count == 0 ? 0 : (double) total / count;
+	}
+	
+	private static void max(AtomicLong max, long value) {
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+	
+	private static LongAdder[] adders(int size) {
+		LongAdder[] adders = new LongAdder[size];
+		for (int i = 0; i < size; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+}
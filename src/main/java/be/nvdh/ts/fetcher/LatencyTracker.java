@@ -0,0 +1,43 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the latencies of the most recent requests to tell what counts as a slow one.
+ */
+public class LatencyTracker {
+	
+	private static final int MIN_SAMPLES = 20;
+	
+	private final long[] samples;
+	private int next;
+	private int count;
+	
+	public LatencyTracker(int size) {
+		this.samples = new long[size];
+	}
+	
+	public synchronized void record(long nanos) {
+		samples[next] = nanos;
+		next = (next + 1) % samples.length;
+		count = Math.min(count + 1, samples.length);
+	}
+	
+	/**
+	 * @return the latency below which the given percentage of the recent requests completed, or -1 while too few were seen
+	 */
+	public long percentileMillis(double percentile) {
+		long[] sorted;
+		synchronized (this) {
+			if (count < MIN_SAMPLES){
+				return -1;
+			}
+			sorted = Arrays.copyOf(samples, count);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+	}
+
+}
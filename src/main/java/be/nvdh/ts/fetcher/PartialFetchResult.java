@@ -0,0 +1,33 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.domain.Prestation;
+
+/**
+ * A result that lacks the days whose page could not be fetched. The totals only cover the days that are present.
+ */
+public class PartialFetchResult extends FetchResult {
+	
+	private final List<LocalDate> missingDays;
+	
+	public PartialFetchResult(LocalDate fetchDate, LocalDate dateToFetch, List<Prestation> prestations, Duration totalTime, Duration totalOvertime, LocalTime timeToGoHome, List<LocalDate> missingDays) {
+		super(fetchDate, dateToFetch, prestations, totalTime, totalOvertime, timeToGoHome);
+		this.missingDays = Collections.unmodifiableList(missingDays);
+	}
+	
+	public List<LocalDate> getMissingDays() {
+		return missingDays;
+	}
+	
+	public boolean isComplete() {
+		return missingDays.isEmpty();
+	}
+
+}
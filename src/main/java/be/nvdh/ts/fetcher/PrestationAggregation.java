@@ -0,0 +1,95 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.joda.time.LocalDate;
+
+import be.nvdh.ts.domain.Prestation;
+
+/**
+ * Totals over a range of prestations, per week (keyed by {@link #weekKey(LocalDate)}), per month (keyed by {@link #monthKey(LocalDate)}) and overall.
+ */
+public class PrestationAggregation {
+	
+	private final PrestationTotals total = new PrestationTotals();
+	private final Map<Integer, PrestationTotals> weeks = new LinkedHashMap<Integer, PrestationTotals>();
+	private final Map<Integer, PrestationTotals> months = new LinkedHashMap<Integer, PrestationTotals>();
+	private final long[] runningOvertimeMillis;
+	
+	PrestationAggregation(int numberOfPrestations) {
+		runningOvertimeMillis = new long[numberOfPrestations];
+	}
+	
+	public static int weekKey(LocalDate date) {
+		return date.getWeekyear() * 100 + date.getWeekOfWeekyear();
+	}
+	
+	public static int monthKey(LocalDate date) {
+		return date.getYear() * 100 + date.getMonthOfYear();
+	}
+	
+	public PrestationTotals getTotal() {
+		return total;
+	}
+	
+	public Map<Integer, PrestationTotals> getWeeks() {
+		return weeks;
+	}
+	
+	public Map<Integer, PrestationTotals> getMonths() {
+		return months;
+	}
+	
+	public PrestationTotals getWeek(LocalDate date) {
+		return weeks.get(weekKey(date));
+	}
+	
+	public PrestationTotals getMonth(LocalDate date) {
+		return months.get(monthKey(date));
+	}
+	
+	/**
+	 * @return the overtime accumulated up to and including the prestation at the given position
+	 */
+	public long getRunningOvertimeMillis(int index) {
+		return runningOvertimeMillis[index];
+	}
+	
+	PrestationTotals add(int index, Prestation prestation, int weekKey, int monthKey) {
+		total.add(prestation);
+		PrestationTotals week = totals(weeks, weekKey);
+		week.add(prestation);
+		totals(months, monthKey).add(prestation);
+		runningOvertimeMillis[index] = total.getOvertimeMillis();
+		return week;
+	}
+	
+	/**
+	 * Swaps the prestation at the given position for a newer version of the same day, adjusting every total it contributes to.
+	 */
+	void replace(int index, Prestation oldPrestation, Prestation newPrestation) {
+		total.remove(oldPrestation);
+		total.add(newPrestation);
+		PrestationTotals week = getWeek(newPrestation.getDay());
+		week.remove(oldPrestation);
+		week.add(newPrestation);
+		PrestationTotals month = getMonth(newPrestation.getDay());
+		month.remove(oldPrestation);
+		month.add(newPrestation);
+		long overtimeDifference = newPrestation.getOvertime().getMillis() - oldPrestation.getOvertime().getMillis();
+		for (int i = index; i < runningOvertimeMillis.length; i++) {
+			runningOvertimeMillis[i] += overtimeDifference;
+		}
+	}
+	
+	private PrestationTotals totals(Map<Integer, PrestationTotals> totalsByKey, int key) {
+		PrestationTotals totals = totalsByKey.get(key);
+		if (totals == null){
+			totals = new PrestationTotals();
+			totalsByKey.put(key, totals);
+		}
+		return totals;
+	}
+
+}
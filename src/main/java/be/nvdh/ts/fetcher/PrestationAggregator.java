@@ -0,0 +1,61 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import be.nvdh.ts.domain.Prestation;
+
+/**
+ * Computes all totals in one pass over prestations ordered by day, 
+ * and marks the last prestation of every week with the overtime of that week.
+ */
+public class PrestationAggregator {
+	
+	private static final Comparator<Prestation> BY_DAY = new Comparator<Prestation>() {
+		public int compare(Prestation prestation, Prestation otherPrestation) {
+			return prestation.getDay().compareTo(otherPrestation.getDay());
+		}
+	};
+	
+	public static PrestationAggregation aggregate(List<Prestation> prestations) {
+		List<Prestation> orderedPrestations = ordered(prestations);
+		PrestationAggregation aggregation = new PrestationAggregation(orderedPrestations.size());
+		
+		Prestation previous = null;
+		PrestationTotals previousWeek = null;
+		int previousWeekKey = 0;
+		for (int i = 0; i < orderedPrestations.size(); i++) {
+			Prestation prestation = orderedPrestations.get(i);
+			int weekKey = PrestationAggregation.weekKey(prestation.getDay());
+			if (previous != null && weekKey != previousWeekKey){
+				closeWeek(previous, previousWeek);
+			}
+			previousWeek = aggregation.add(i, prestation, weekKey, PrestationAggregation.monthKey(prestation.getDay()));
+			previousWeekKey = weekKey;
+			previous = prestation;
+		}
+		if (previous != null){
+			closeWeek(previous, previousWeek);
+		}
+		return aggregation;
+	}
+	
+	static void closeWeek(Prestation lastPrestationOfWeek, PrestationTotals week) {
+		lastPrestationOfWeek.setWeekOvertime(week.getOvertime());
+		lastPrestationOfWeek.setLastDayOfWeek(true);
+	}
+	
+	private static List<Prestation> ordered(List<Prestation> prestations) {
+		for (int i = 1; i < prestations.size(); i++) {
+			if (prestations.get(i).getDay().isBefore(prestations.get(i - 1).getDay())){
+				List<Prestation> orderedPrestations = new ArrayList<Prestation>(prestations);
+				Collections.sort(orderedPrestations, BY_DAY);
+				return orderedPrestations;
+			}
+		}
+		return prestations;
+	}
+
+}
@@ -0,0 +1,110 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.Days;
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+
+import be.nvdh.ts.domain.Prestation;
+
+/**
+ * The prestations of one person as parallel primitive columns: the day counted from 1970-01-01, the time and overtime in seconds,
+ * the {@link DayCode} and whether the day had irregularities. A year of days takes a few kilobytes.
+ */
+public class PrestationColumns {
+	
+	private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
+	private static final DayCode[] DAY_CODES = DayCode.values();
+	
+	private final String person;
+	private int size;
+	private int[] days;
+	private int[] timeSeconds;
+	private int[] overtimeSeconds;
+	private byte[] dayCodes;
+	private boolean[] irregularities;
+	
+	public PrestationColumns(String person) {
+		this(person, 32);
+	}
+	
+	public PrestationColumns(String person, int capacity) {
+		this.person = person;
+		this.days = new int[capacity];
+		this.timeSeconds = new int[capacity];
+		this.overtimeSeconds = new int[capacity];
+		this.dayCodes = new byte[capacity];
+		this.irregularities = new boolean[capacity];
+	}
+	
+	public void add(LocalDate day, Duration time, Duration overtime, DayCode dayCode, boolean irregularities) {
+		add(epochDay(day), (int) time.getStandardSeconds(), (int) overtime.getStandardSeconds(), dayCode, irregularities);
+	}
+	
+	void add(int epochDay, int timeSeconds, int overtimeSeconds, DayCode dayCode, boolean irregularities) {
+		if (size == days.length){
+			grow();
+		}
+		this.days[size] = epochDay;
+		this.timeSeconds[size] = timeSeconds;
+		this.overtimeSeconds[size] = overtimeSeconds;
+		this.dayCodes[size] = (byte) dayCode.ordinal();
+		this.irregularities[size] = irregularities;
+		size++;
+	}
+	
+	/**
+	 * @param day the registrations the prestation was calculated from
+	 */
+	void add(DayRegistration day, Prestation prestation) {
+		add(prestation.getDay(), prestation.getDuration(), prestation.getOvertime(), DayCode.fromRawCode(day.getRawDayCode()), StringUtils.isNotBlank(day.getIrregularities()));
+	}
+	
+	public String getPerson() {
+		return person;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	int getEpochDay(int index) {
+		return days[index];
+	}
+	
+	int getTimeSeconds(int index) {
+		return timeSeconds[index];
+	}
+	
+	int getOvertimeSeconds(int index) {
+		return overtimeSeconds[index];
+	}
+	
+	DayCode getDayCode(int index) {
+		return DAY_CODES[dayCodes[index]];
+	}
+	
+	boolean hasIrregularities(int index) {
+		return irregularities[index];
+	}
+	
+	static int epochDay(LocalDate date) {
+		return Days.daysBetween(EPOCH, date).getDays();
+	}
+	
+	static LocalDate date(int epochDay) {
+		return EPOCH.plusDays(epochDay);
+	}
+	
+	private void grow() {
+		int capacity = Math.max(16, 2 * days.length);
+		days = Arrays.copyOf(days, capacity);
+		timeSeconds = Arrays.copyOf(timeSeconds, capacity);
+		overtimeSeconds = Arrays.copyOf(overtimeSeconds, capacity);
+		dayCodes = Arrays.copyOf(dayCodes, capacity);
+		irregularities = Arrays.copyOf(irregularities, capacity);
+	}
+
+}
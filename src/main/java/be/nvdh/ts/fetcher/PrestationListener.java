@@ -0,0 +1,30 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.List;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+import be.nvdh.ts.domain.Prestation;
+import be.nvdh.ts.exception.FetchException;
+
+/**
+ * Receives a streamed fetch day by day, in date order. Weekend days without registrations are left out.
+ * Every event of one fetch comes from the same thread.
+ */
+public interface PrestationListener {
+	
+	void prestationFetched(Prestation prestation);
+	
+	/**
+	 * The last prestation of the week, already passed to {@link #prestationFetched(Prestation)}, now carries the overtime of that week.
+	 */
+	void weekCompleted(Prestation lastPrestationOfWeek, PrestationTotals week);
+	
+	void monthCompleted(LocalDate month, PrestationTotals totals);
+	
+	void fetchCompleted(PrestationTotals total, LocalTime timeToGoHome, List<LocalDate> missingDays);
+	
+	void fetchFailed(FetchException exception);
+
+}
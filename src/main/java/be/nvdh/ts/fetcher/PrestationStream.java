@@ -0,0 +1,118 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.List;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+import be.nvdh.ts.domain.Prestation;
+
+/**
+ * Passes the prestations of a range of days on to a {@link PrestationListener} in date order, whatever order they are offered in.
+ * A day is held back only until all days before it are offered or skipped; the totals are kept as the days go by.
+ */
+class PrestationStream {
+	
+	private final LocalDate firstDay;
+	private final Prestation[] pending;
+	private final boolean[] settled;
+	private final PrestationListener listener;
+	private final LocalDate today = new LocalDate();
+	
+	private final PrestationTotals total = new PrestationTotals();
+	private PrestationTotals week;
+	private PrestationTotals month;
+	private int next;
+	
+	private Prestation previous;
+	private Prestation todaysPrestation;
+	
+	PrestationStream(LocalDate firstDay, int numberOfDays, PrestationListener listener) {
+		this.firstDay = firstDay;
+		this.pending = new Prestation[numberOfDays];
+		this.settled = new boolean[numberOfDays];
+		this.listener = listener;
+	}
+	
+	synchronized void offer(Prestation prestation) {
+		int index = index(prestation.getDay());
+		pending[index] = prestation;
+		settled[index] = true;
+		drain();
+	}
+	
+	/**
+	 * The day is missing or not shown.
+	 */
+	synchronized void skip(LocalDate date) {
+		settled[index(date)] = true;
+		drain();
+	}
+	
+	synchronized void complete(LocalTime timeToGoHome, List<LocalDate> missingDays) {
+		if (previous != null){
+			closeWeek();
+			closeMonth();
+		}
+		listener.fetchCompleted(total, timeToGoHome, missingDays);
+	}
+	
+	synchronized PrestationTotals getTotal() {
+		return total;
+	}
+	
+	synchronized Prestation getPrestationOfToday() {
+		return todaysPrestation;
+	}
+	
+	private void drain() {
+		while (next < settled.length && settled[next]) {
+			Prestation prestation = pending[next];
+			pending[next++] = null;
+			if (prestation != null){
+				emit(prestation);
+			}
+		}
+	}
+	
+	private void emit(Prestation prestation) {
+		LocalDate day = prestation.getDay();
+		if (previous != null && PrestationAggregation.weekKey(day) != PrestationAggregation.weekKey(previous.getDay())){
+			closeWeek();
+		}
+		if (previous != null && PrestationAggregation.monthKey(day) != PrestationAggregation.monthKey(previous.getDay())){
+			closeMonth();
+		}
+		if (week == null){
+			week = new PrestationTotals();
+		}
+		if (month == null){
+			month = new PrestationTotals();
+		}
+		total.add(prestation);
+		week.add(prestation);
+		month.add(prestation);
+		if (day.isEqual(today)){
+			todaysPrestation = prestation;
+		}
+		previous = prestation;
+		listener.prestationFetched(prestation);
+	}
+	
+	private void closeWeek() {
+		PrestationAggregator.closeWeek(previous, week);
+		listener.weekCompleted(previous, week);
+		week = null;
+	}
+	
+	private void closeMonth() {
+		listener.monthCompleted(previous.getDay().withDayOfMonth(1), month);
+		month = null;
+	}
+	
+	private int index(LocalDate date) {
+		return Days.daysBetween(firstDay, date).getDays();
+	}
+
+}
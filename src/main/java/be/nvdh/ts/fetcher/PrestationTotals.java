@@ -0,0 +1,51 @@
+package be.nvdh.ts.fetcher;
+
+import org.joda.time.Duration;
+
+import be.nvdh.ts.domain.Prestation;
+
+public class PrestationTotals {
+	
+	private long timeMillis;
+	private long overtimeMillis;
+	private int days;
+	
+	void add(Prestation prestation) {
+		timeMillis += prestation.getDuration().getMillis();
+		overtimeMillis += prestation.getOvertime().getMillis();
+		days++;
+	}
+	
+	void add(long timeMillis, long overtimeMillis) {
+		this.timeMillis += timeMillis;
+		this.overtimeMillis += overtimeMillis;
+		days++;
+	}
+	
+	void remove(Prestation prestation) {
+		timeMillis -= prestation.getDuration().getMillis();
+		overtimeMillis -= prestation.getOvertime().getMillis();
+		days--;
+	}
+	
+	public Duration getTime() {
+		return new Duration(timeMillis);
+	}
+	
+	public Duration getOvertime() {
+		return new Duration(overtimeMillis);
+	}
+	
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+	
+	public long getOvertimeMillis() {
+		return overtimeMillis;
+	}
+	
+	public int getDays() {
+		return days;
+	}
+
+}
@@ -0,0 +1,128 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that hands out at most the current rate of permits per second, with bursts of up to one second's worth.
+ * The rate adapts to the server: it is halved, down to a sixteenth of the maximum, when the average latency rises above the slowdown latency or requests fail,
+ * and it grows back by a tenth of the maximum rate per adjustment interval while the server keeps up.
+ */
+public class RateLimiter {
+	
+	private static final long ADJUSTMENT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final double LATENCY_WEIGHT = 0.2;
+	private static final double MAX_SLOWDOWN = 16;
+	
+	private final Ticker ticker;
+	private final double maxRate;
+	private final double minRate;
+	private final long slowdownLatencyNanos;
+	
+	private double rate;
+	private double tokens;
+	private long lastRefillNanos;
+	private long lastAdjustmentNanos;
+	private double averageLatencyNanos;
+	private boolean failedSinceAdjustment;
+	
+	public RateLimiter(double maxRate, long slowdownLatencyMillis) {
+		this(maxRate, slowdownLatencyMillis, Ticker.SYSTEM);
+	}
+	
+	RateLimiter(double maxRate, long slowdownLatencyMillis, Ticker ticker) {
+		this.ticker = ticker;
+		this.maxRate = maxRate;
+		this.minRate = maxRate / MAX_SLOWDOWN;
+		this.slowdownLatencyNanos = TimeUnit.MILLISECONDS.toNanos(slowdownLatencyMillis);
+		this.rate = maxRate;
+		this.tokens = 1;
+		this.lastRefillNanos = ticker.nanoTime();
+		this.lastAdjustmentNanos = lastRefillNanos;
+	}
+	
+	public void acquire() throws InterruptedIOException {
+		long waitNanos;
+		while ((waitNanos = tryAcquire()) > 0) {
+			try {
+				ticker.sleep(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a request permit");
+			}
+		}
+	}
+	
+	/**
+	 * Feeds the outcome of a request into the rate.
+	 * @param latencyNanos the time from sending the request until its whole response was read and closed, or until it failed
+	 */
+	public synchronized void completed(long latencyNanos, boolean failed) {
+		averageLatencyNanos = averageLatencyNanos == 0 ? latencyNanos : (1 - LATENCY_WEIGHT) * averageLatencyNanos + LATENCY_WEIGHT * latencyNanos;
+		failedSinceAdjustment |= failed;
+		long now = ticker.nanoTime();
+		if (now - lastAdjustmentNanos < ADJUSTMENT_INTERVAL_NANOS){
+			return;
+		}
+		refill(now);
+		if (failedSinceAdjustment || averageLatencyNanos > slowdownLatencyNanos){
+			rate = Math.max(minRate, rate / 2);
+			tokens = Math.min(tokens, capacity());
+		} else {
+			rate = Math.min(maxRate, rate + maxRate / 10);
+		}
+		failedSinceAdjustment = false;
+		lastAdjustmentNanos = now;
+	}
+	
+	public synchronized double getRate() {
+		return rate;
+	}
+	
+	public synchronized long getAverageLatencyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis((long) averageLatencyNanos);
+	}
+	
+	/**
+	 * @return 0 when a permit was taken, otherwise the time to wait for the next one
+	 */
+	private synchronized long tryAcquire() {
+		refill(ticker.nanoTime());
+		if (tokens >= 1){
+			tokens--;
+			return 0;
+		}
+		return (long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+	}
+	
+	private void refill(long now) {
+		tokens = Math.min(capacity(), tokens + (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+		lastRefillNanos = now;
+	}
+	
+	private double capacity() {
+		return Math.max(1, rate);
+	}
+	
+	/**
+	 * The time source of the limiter, replaced in tests by one that only moves when it is told to.
+	 */
+	interface Ticker {
+		
+		Ticker SYSTEM = new Ticker() {
+			public long nanoTime() {
+				return System.nanoTime();
+			}
+			
+			public void sleep(long nanos) throws InterruptedException {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			}
+		};
+		
+		long nanoTime();
+		
+		void sleep(long nanos) throws InterruptedException;
+		
+	}
+
+}
@@ -0,0 +1,47 @@
+package be.nvdh.ts.fetcher;
+
+import org.joda.time.Duration;
+
+/**
+ * Time, overtime and day counts of a {@link TeamReport} for one person or the whole team, over one week or the whole report.
+ */
+public class ReportTotals {
+	
+	private long timeSeconds;
+	private long overtimeSeconds;
+	private int days;
+	private int holidayDays;
+	private int irregularDays;
+	
+	void add(long timeSeconds, long overtimeSeconds, int days, int holidayDays, int irregularDays) {
+		this.timeSeconds += timeSeconds;
+		this.overtimeSeconds += overtimeSeconds;
+		this.days += days;
+		this.holidayDays += holidayDays;
+		this.irregularDays += irregularDays;
+	}
+	
+	public Duration getTime() {
+		return Duration.standardSeconds(timeSeconds);
+	}
+	
+	public Duration getOvertime() {
+		return Duration.standardSeconds(overtimeSeconds);
+	}
+	
+	public int getDays() {
+		return days;
+	}
+	
+	/**
+	 * @return the days with day code {@link DayCode#HOLIDAY} or {@link DayCode#CAO}
+	 */
+	public int getHolidayDays() {
+		return holidayDays;
+	}
+	
+	public int getIrregularDays() {
+		return irregularDays;
+	}
+
+}
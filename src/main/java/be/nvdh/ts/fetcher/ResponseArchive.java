@@ -0,0 +1,150 @@
+package be.nvdh.ts.fetcher;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+
+/**
+ * Compressed record of what the {@link DayPageExtractor} took from the day pages, one gzip file per month.
+ * Every line holds a date followed by the ids and texts of its fragments; the form state is never recorded.
+ * Replaying a day runs its fragments through a new extractor, so changes to the extraction and calculation rules apply to it.
+ */
+public class ResponseArchive {
+	
+	private static final String FILE_EXTENSION  = ".days.gz";
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final File directory;
+	private final Map<LocalDate, Map<LocalDate, List<String>>> months = new HashMap<LocalDate, Map<LocalDate, List<String>>>();
+	private final Set<LocalDate> dirtyMonths = new HashSet<LocalDate>();
+	
+	private DateTimeFormatter monthFormat = new DateTimeFormatterBuilder().appendYear(4, 4).appendLiteral("-").appendMonthOfYear(2).toFormatter();
+	
+	public ResponseArchive(File directory) {
+		this.directory = directory;
+	}
+	
+	public synchronized boolean contains(LocalDate date) throws IOException {
+		return month(date).containsKey(date);
+	}
+	
+	/**
+	 * @return the day extracted again from its recorded fragments, or null when it was not recorded
+	 */
+	public synchronized DayRegistration get(LocalDate date) throws IOException {
+		List<String> fragments = month(date).get(date);
+		if (fragments == null){
+			return null;
+		}
+		DayPageExtractor extractor = new DayPageExtractor();
+		for (int i = 0; i + 1 < fragments.size(); i += 2) {
+			extractor.accept(fragments.get(i), fragments.get(i + 1));
+		}
+		return extractor.toDayRegistration(date);
+	}
+	
+	/**
+	 * Days that were not extracted from a page, such as cached days, are not recorded.
+	 */
+	public synchronized void put(DayRegistration day) throws IOException {
+		if (day.getFragments() == null){
+			return;
+		}
+		month(day.getDate()).put(day.getDate(), day.getFragments());
+		dirtyMonths.add(firstDayOfMonth(day.getDate()));
+	}
+	
+	public synchronized void flush() throws IOException {
+		for (LocalDate month : dirtyMonths) {
+			store(month, months.get(month));
+		}
+		dirtyMonths.clear();
+	}
+	
+	private Map<LocalDate, List<String>> month(LocalDate date) throws IOException {
+		LocalDate month = firstDayOfMonth(date);
+		Map<LocalDate, List<String>> days = months.get(month);
+		if (days == null){
+			days = load(month);
+			months.put(month, days);
+		}
+		return days;
+	}
+	
+	private Map<LocalDate, List<String>> load(LocalDate month) throws IOException {
+		Map<LocalDate, List<String>> days = new TreeMap<LocalDate, List<String>>();
+		File file = monthFile(month);
+		if (file.exists()){
+			BufferedReader in = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), UTF_8));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] fields = StringUtils.splitPreserveAllTokens(line, FIELD_SEPARATOR);
+					if (fields.length % 2 == 0){
+						throw new IOException("Corrupt archive line in " + file + ": " + line);
+					}
+					days.put(LocalDate.parse(fields[0]), Arrays.asList(fields).subList(1, fields.length));
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return days;
+	}
+	
+	private void store(LocalDate month, Map<LocalDate, List<String>> days) throws IOException {
+		if (!directory.exists() && !directory.mkdirs()){
+			throw new IOException("Unable to create archive directory " + directory);
+		}
+		File file = monthFile(month);
+		File tempFile = new File(directory, file.getName() + ".tmp");
+		Writer out = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tempFile)), UTF_8);
+		try {
+			for (Entry<LocalDate, List<String>> day : days.entrySet()) {
+				out.write(day.getKey().toString());
+				for (String fragment : day.getValue()) {
+					out.write(FIELD_SEPARATOR);
+					out.write(StringUtils.replaceChars(fragment, "\t\r\n", "   "));
+				}
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(tempFile.toPath(), file.toPath(), REPLACE_EXISTING);
+	}
+	
+	private File monthFile(LocalDate month) {
+		return new File(directory, monthFormat.print(month) + FILE_EXTENSION);
+	}
+	
+	private LocalDate firstDayOfMonth(LocalDate date) {
+		return date.withDayOfMonth(1);
+	}
+
+}
@@ -0,0 +1,36 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How often a failed day page is asked again, and how long to wait in between.
+ * The wait doubles with every attempt up to a maximum, and a random half of it is dropped so retries of concurrent fetches spread out.
+ */
+public class RetryPolicy {
+	
+	private final int maxRetries;
+	private final long backoffMillis;
+	private final long maxBackoffMillis;
+	
+	public RetryPolicy(int maxRetries, long backoffMillis, long maxBackoffMillis) {
+		this.maxRetries = maxRetries;
+		this.backoffMillis = backoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+	
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+	
+	/**
+	 * @param retry the number of the retry about to be made, starting at 1
+	 */
+	public long backoffMillis(int retry) {
+		long backoff = Math.min(maxBackoffMillis, backoffMillis << Math.min(retry - 1, 30));
+		if (backoff <= 1){
+			return backoff;
+		}
+		return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+	}
+
+}
@@ -0,0 +1,116 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds one {@link ElineSession} per account. Lookups do not lock; sessions idle for longer than the idle time are dropped 
+ * and when the pool grows beyond its maximum size the least recently used session goes.
+ */
+public class SessionPool {
+	
+	private final HttpTransport transport;
+	private final FetchMetrics metrics;
+	private final int maxSessions;
+	private final long idleMillis;
+	
+	private final ConcurrentMap<Account, PooledSession> sessions = new ConcurrentHashMap<Account, PooledSession>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+	
+	public SessionPool(HttpTransport transport, FetchMetrics metrics, int maxSessions, long idleMillis) {
+		this.transport = transport;
+		this.metrics = metrics;
+		this.maxSessions = maxSessions;
+		this.idleMillis = idleMillis;
+	}
+	
+	public ElineSession session(Account account) {
+		long now = System.currentTimeMillis();
+		PooledSession pooledSession = sessions.get(account);
+		if (pooledSession == null || pooledSession.isIdle(now, idleMillis)){
+			PooledSession newSession = new PooledSession(new ElineSession(account.getUrl(), transport, metrics), now);
+			if (pooledSession == null){
+				pooledSession = sessions.putIfAbsent(account, newSession);
+			} else {
+				pooledSession = sessions.replace(account, pooledSession, newSession) ? null : sessions.get(account);
+			}
+			if (pooledSession == null){
+				pooledSession = newSession;
+			}
+		}
+		pooledSession.touch(now);
+		evictIfNeeded(now);
+		return pooledSession.session;
+	}
+	
+	public int size() {
+		return sessions.size();
+	}
+	
+	public void clear() {
+		sessions.clear();
+	}
+	
+	private void evictIfNeeded(long now) {
+		boolean tooLarge = sessions.size() > maxSessions;
+		boolean sweepDue = now - lastEviction.get() > idleMillis;
+		if ((tooLarge || sweepDue) && evictionLock.tryLock()){
+			try {
+				lastEviction.set(now);
+				evictIdleSessions(now);
+				while (sessions.size() > maxSessions) {
+					evictLeastRecentlyUsed();
+				}
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+	
+	private void evictIdleSessions(long now) {
+		Iterator<PooledSession> iterator = sessions.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isIdle(now, idleMillis)){
+				iterator.remove();
+			}
+		}
+	}
+	
+	private void evictLeastRecentlyUsed() {
+		Entry<Account, PooledSession> leastRecentlyUsed = null;
+		for (Entry<Account, PooledSession> entry : sessions.entrySet()) {
+			if (leastRecentlyUsed == null || entry.getValue().lastUsed < leastRecentlyUsed.getValue().lastUsed){
+				leastRecentlyUsed = entry;
+			}
+		}
+		if (leastRecentlyUsed != null){
+			sessions.remove(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue());
+		}
+	}
+	
+	private static class PooledSession {
+		
+		private final ElineSession session;
+		private volatile long lastUsed;
+		
+		PooledSession(ElineSession session, long now) {
+			this.session = session;
+			this.lastUsed = now;
+		}
+		
+		void touch(long now) {
+			lastUsed = now;
+		}
+		
+		boolean isIdle(long now, long idleMillis) {
+			return now - lastUsed > idleMillis;
+		}
+		
+	}
+
+}
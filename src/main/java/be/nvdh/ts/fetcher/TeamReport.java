@@ -0,0 +1,82 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Totals of a team for every person in every week, summed per person, per week and for the whole team.
+ * Weeks start on monday; the first and last week only count the days within the reported range.
+ */
+public class TeamReport {
+	
+	private final List<String> persons;
+	private final Map<String, Integer> rows = new HashMap<String, Integer>();
+	private final int firstWeek;
+	private final WeeklyTotals personTotals;
+	private final WeeklyTotals teamTotals;
+	
+	TeamReport(List<String> persons, int firstWeek, WeeklyTotals personTotals, WeeklyTotals teamTotals) {
+		this.persons = Collections.unmodifiableList(persons);
+		this.firstWeek = firstWeek;
+		this.personTotals = personTotals;
+		this.teamTotals = teamTotals;
+		for (int row = 0; row < persons.size(); row++) {
+			rows.put(persons.get(row), row);
+		}
+	}
+	
+	public List<String> getPersons() {
+		return persons;
+	}
+	
+	/**
+	 * @return the monday of every week in the report
+	 */
+	public List<LocalDate> getWeeks() {
+		List<LocalDate> weeks = new ArrayList<LocalDate>();
+		for (int week = 0; week < teamTotals.getWeeks(); week++) {
+			weeks.add(PrestationColumns.date(TeamReporter.monday(firstWeek + week)));
+		}
+		return weeks;
+	}
+	
+	public ReportTotals getTeam() {
+		return teamTotals.totals(0, 0, teamTotals.getWeeks() - 1);
+	}
+	
+	/**
+	 * @return the totals of the team in the week of the date, or null when that week is not in the report
+	 */
+	public ReportTotals getTeamWeek(LocalDate date) {
+		int week = week(date);
+		return week >= 0 ? teamTotals.totals(0, week, week) : null;
+	}
+	
+	/**
+	 * @return the totals of the person, or null when the person is not in the report
+	 */
+	public ReportTotals getPerson(String person) {
+		Integer row = rows.get(person);
+		return row != null ? personTotals.totals(row, 0, personTotals.getWeeks() - 1) : null;
+	}
+	
+	/**
+	 * @return the totals of the person in the week of the date, or null when the person or the week is not in the report
+	 */
+	public ReportTotals getPersonWeek(String person, LocalDate date) {
+		Integer row = rows.get(person);
+		int week = week(date);
+		return row != null && week >= 0 ? personTotals.totals(row, week, week) : null;
+	}
+	
+	private int week(LocalDate date) {
+		int week = TeamReporter.week(PrestationColumns.epochDay(date)) - firstWeek;
+		return week < teamTotals.getWeeks() ? week : -1;
+	}
+	
+}
@@ -0,0 +1,103 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Totals the prestation columns of many persons into a {@link TeamReport} with fork/join.
+ * The persons are split in halves until a slice is small enough to total on its own; every slice writes the rows of its own persons,
+ * and the week totals of the team are added up while the slices are joined.
+ */
+public class TeamReporter {
+	
+	private static final int PERSONS_PER_TASK = 4;
+	
+	public static TeamReport report(List<PrestationColumns> persons, LocalDate from, LocalDate to) {
+		return report(persons, from, to, ForkJoinPool.commonPool());
+	}
+	
+	public static TeamReport report(List<PrestationColumns> persons, LocalDate from, LocalDate to, ForkJoinPool pool) {
+		int firstDay = PrestationColumns.epochDay(from);
+		int lastDay = PrestationColumns.epochDay(to);
+		int firstWeek = week(firstDay);
+		WeeklyTotals personTotals = new WeeklyTotals(persons.size(), week(lastDay) - firstWeek + 1);
+		WeeklyTotals teamTotals = pool.invoke(new Slice(persons, 0, persons.size(), firstDay, lastDay, firstWeek, personTotals));
+		List<String> names = new ArrayList<String>(persons.size());
+		for (PrestationColumns columns : persons) {
+			names.add(columns.getPerson());
+		}
+		return new TeamReport(names, firstWeek, personTotals, teamTotals);
+	}
+	
+	/**
+	 * @return the number of the week, starting on monday, of a day counted from 1970-01-01, which was a thursday
+	 */
+	static int week(int epochDay) {
+		return Math.floorDiv(epochDay + 3, 7);
+	}
+	
+	static int monday(int week) {
+		return 7 * week - 3;
+	}
+	
+	private static class Slice extends RecursiveTask<WeeklyTotals> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<PrestationColumns> persons;
+		private final int from;
+		private final int to;
+		private final int firstDay;
+		private final int lastDay;
+		private final int firstWeek;
+		private final WeeklyTotals personTotals;
+		
+		Slice(List<PrestationColumns> persons, int from, int to, int firstDay, int lastDay, int firstWeek, WeeklyTotals personTotals) {
+			this.persons = persons;
+			this.from = from;
+			this.to = to;
+			this.firstDay = firstDay;
+			this.lastDay = lastDay;
+			this.firstWeek = firstWeek;
+			this.personTotals = personTotals;
+		}
+		
+		protected WeeklyTotals compute() {
+			if (to - from <= PERSONS_PER_TASK){
+				WeeklyTotals teamTotals = new WeeklyTotals(1, personTotals.getWeeks());
+				for (int person = from; person < to; person++) {
+					total(person, teamTotals);
+				}
+				return teamTotals;
+			}
+			int middle = (from + to) >>> 1;
+			Slice firstHalf = new Slice(persons, from, middle, firstDay, lastDay, firstWeek, personTotals);
+			firstHalf.fork();
+			WeeklyTotals teamTotals = new Slice(persons, middle, to, firstDay, lastDay, firstWeek, personTotals).compute();
+			teamTotals.addAll(firstHalf.join());
+			return teamTotals;
+		}
+		
+		private void total(int person, WeeklyTotals teamTotals) {
+			PrestationColumns columns = persons.get(person);
+			for (int i = 0; i < columns.size(); i++) {
+				int day = columns.getEpochDay(i);
+				if (day >= firstDay && day <= lastDay){
+					int week = week(day) - firstWeek;
+					int timeSeconds = columns.getTimeSeconds(i);
+					int overtimeSeconds = columns.getOvertimeSeconds(i);
+					boolean holiday = columns.getDayCode(i).isHoliday();
+					boolean irregular = columns.hasIrregularities(i);
+					personTotals.add(person, week, timeSeconds, overtimeSeconds, holiday, irregular);
+					teamTotals.add(0, week, timeSeconds, overtimeSeconds, holiday, irregular);
+				}
+			}
+		}
+		
+	}
+	
+}
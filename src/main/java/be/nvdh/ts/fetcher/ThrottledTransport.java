@@ -0,0 +1,108 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets requests through another transport no faster than a {@link RateLimiter} allows, and with at most the given number in flight per server.
+ * A request holds its server's slot until its response is closed; its latency, as fed to the rate limiter, also runs until then,
+ * so a slow body slows the rate down as much as slow headers do.
+ */
+public class ThrottledTransport implements HttpTransport {
+	
+	private final HttpTransport transport;
+	private final RateLimiter rateLimiter;
+	private final int maxConcurrentPerServer;
+	private final ConcurrentMap<String, Semaphore> servers = new ConcurrentHashMap<String, Semaphore>();
+	
+	public ThrottledTransport(HttpTransport transport, RateLimiter rateLimiter, int maxConcurrentPerServer) {
+		this.transport = transport;
+		this.rateLimiter = rateLimiter;
+		this.maxConcurrentPerServer = maxConcurrentPerServer;
+	}
+
+	public TransportResponse get(String url, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+		Semaphore server = acquire(url, context);
+		long startNanos = System.nanoTime();
+		try {
+			return throttled(transport.get(url, cookies, context.timeoutMillis(timeoutMillis), context), server, startNanos);
+		} catch (IOException e) {
+			failed(server, startNanos);
+			throw e;
+		}
+	}
+
+	public TransportResponse post(String url, byte[] formBody, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+		Semaphore server = acquire(url, context);
+		long startNanos = System.nanoTime();
+		try {
+			return throttled(transport.post(url, formBody, cookies, context.timeoutMillis(timeoutMillis), context), server, startNanos);
+		} catch (IOException e) {
+			failed(server, startNanos);
+			throw e;
+		}
+	}
+	
+	private Semaphore acquire(String url, FetchContext context) throws IOException {
+		Semaphore server = server(url);
+		try {
+			server.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			context.check();
+			throw new InterruptedIOException("Interrupted while waiting for a free connection to " + url);
+		}
+		try {
+			context.check();
+			rateLimiter.acquire();
+			return server;
+		} catch (IOException e) {
+			server.release();
+			throw e;
+		}
+	}
+	
+	private TransportResponse throttled(final TransportResponse response, final Semaphore server, final long startNanos) throws IOException {
+		final AtomicBoolean released = new AtomicBoolean();
+		Closeable release = new Closeable() {
+			public void close() throws IOException {
+				if (!released.compareAndSet(false, true)){
+					return;
+				}
+				try {
+					response.close();
+				} finally {
+					server.release();
+					rateLimiter.completed(System.nanoTime() - startNanos, false);
+				}
+			}
+		};
+		return response.withRelease(startNanos, release);
+	}
+	
+	private void failed(Semaphore server, long startNanos) {
+		server.release();
+		rateLimiter.completed(System.nanoTime() - startNanos, true);
+	}
+	
+	private Semaphore server(String url) throws IOException {
+		URL serverUrl = new URL(url);
+		String key = serverUrl.getHost() + ":" + serverUrl.getPort();
+		Semaphore server = servers.get(key);
+		if (server == null){
+			Semaphore newServer = new Semaphore(maxConcurrentPerServer);
+			server = servers.putIfAbsent(key, newServer);
+			if (server == null){
+				server = newServer;
+			}
+		}
+		return server;
+	}
+
+}
@@ -0,0 +1,136 @@
+package be.nvdh.ts.fetcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.LocalTime;
+
+/**
+ * Timesheet arithmetic on sorted minute-of-day arrays. All durations are in minutes.
+ * None of the calculations allocate: arrays are passed in together with the number of values they hold.
+ */
+public class TimesheetKernel {
+	
+	private final int minutesLunch;
+	private final int startLunch;
+	private final int endLunch;
+	
+	public TimesheetKernel(int minutesLunch, int startLunch, int endLunch) {
+		this.minutesLunch = minutesLunch;
+		this.startLunch = startLunch;
+		this.endLunch = endLunch;
+	}
+	
+	public static int minuteOfDay(LocalTime time) {
+		return time.getMillisOfDay() / DateTimeConstants.MILLIS_PER_MINUTE;
+	}
+	
+	public static int[] toMinutesOfDay(List<LocalTime> times) {
+		int[] minutes = new int[times.size()];
+		for (int i = 0; i < minutes.length; i++) {
+			minutes[i] = minuteOfDay(times.get(i));
+		}
+		return minutes;
+	}
+	
+	private static int[] sortedMinutesOfDay(List<LocalTime> registrations) {
+		int[] minutes = toMinutesOfDay(registrations);
+		if (!isSorted(minutes, minutes.length)){
+			Arrays.sort(minutes);
+		}
+		return minutes;
+	}
+	
+	public static boolean isSorted(int[] minutes, int count) {
+		for (int i = 1; i < count; i++) {
+			if (minutes[i] < minutes[i - 1]){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Merges two sorted arrays into target, dropping duplicates.
+	 * @return the number of registrations written to target
+	 */
+	public static int merge(int[] ticks, int tickCount, int[] manual, int manualCount, int[] target) {
+		int t = 0, m = 0, count = 0;
+		while (t < tickCount || m < manualCount) {
+			int next;
+			if (m == manualCount || (t < tickCount && ticks[t] <= manual[m])){
+				next = ticks[t++];
+			} else {
+				next = manual[m++];
+			}
+			if (count == 0 || target[count - 1] != next){
+				target[count++] = next;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Merges the clock and manual registrations of a day, in any order, before totalling them.
+	 * @return the registered minutes, unless the registrations form complete intervals that add up to more than that
+	 */
+	public int totalWithManualRegistrations(int registeredMinutes, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
+		int[] ticks = sortedMinutesOfDay(tickTimes);
+		int[] manual = sortedMinutesOfDay(manualRegistrations);
+		int[] allRegistrations = new int[ticks.length + manual.length];
+		int count = merge(ticks, ticks.length, manual, manual.length, allRegistrations);
+		return totalWithManualRegistrations(registeredMinutes, allRegistrations, count);
+	}
+	
+	/**
+	 * @return the registered minutes, unless the registrations form complete intervals that add up to more than that
+	 */
+	public int totalWithManualRegistrations(int registeredMinutes, int[] registrations, int count) {
+		if (count % 2 == 0){
+			int calculatedMinutes = compensateForLunch(durationOverIntervals(registrations, count), registrations, count);
+			return registeredMinutes > calculatedMinutes ? registeredMinutes : calculatedMinutes;
+		}
+		return registeredMinutes;
+	}
+	
+	public int durationOverIntervals(int[] registrations, int count) {
+		int total = 0;
+		for (int i = 1; i < count; i += 2) {
+			total += registrations[i] - registrations[i - 1];
+		}
+		return total;
+	}
+	
+	public int compensateForLunch(int workedMinutes, int[] registrations, int count) {
+		if (timeOutDuringLunchHours(registrations, count) > minutesLunch){
+			return workedMinutes;
+		}
+		return workedMinutes - minutesLunch;
+	}
+	
+	/**
+	 * Looks at the first interval that starts or ends within the lunch hours only.
+	 */
+	public int timeOutDuringLunchHours(int[] registrations, int count) {
+		for (int i = 1; i < count; i += 2) {
+			int start = registrations[i - 1];
+			int end = registrations[i];
+			boolean startsDuringLunch = isInLunchHours(start);
+			boolean endsDuringLunch = isInLunchHours(end);
+			if (startsDuringLunch && endsDuringLunch){
+				return end - start;
+			} else if (endsDuringLunch){
+				return end - startLunch;
+			} else if (startsDuringLunch){
+				return endLunch - start;
+			}
+		}
+		return 0;
+	}
+	
+	public boolean isInLunchHours(int minuteOfDay) {
+		return minuteOfDay > startLunch && minuteOfDay < endLunch;
+	}
+
+}
@@ -0,0 +1,149 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.domain.Prestation;
+import be.nvdh.ts.exception.FetchException;
+
+/**
+ * Keeps the current month in memory and only re-fetches the page of today on every refresh.
+ * The totals of the month and of this week are adjusted for the difference in today's prestation instead of being recomputed.
+ * The whole month is fetched again when the day changes.
+ * Prestations that were handed out are never changed: the last day of this week gets a new prestation with the new week total.
+ */
+public class TodayWatch {
+	
+	private final ElineFetcher fetcher;
+	private final Account account;
+	private final long periodMillis;
+	private final List<FetchResultListener> listeners = new CopyOnWriteArrayList<FetchResultListener>();
+	
+	private ScheduledExecutorService scheduler;
+	
+	private LocalDate today;
+	private Map<LocalDate, DayRegistration> days;
+	private List<Prestation> prestations;
+	private PrestationAggregation aggregation;
+	private int todayIndex;
+	
+	public TodayWatch(ElineFetcher fetcher, Account account, long periodMillis) {
+		this.fetcher = fetcher;
+		this.account = account;
+		this.periodMillis = periodMillis;
+	}
+	
+	public void addListener(FetchResultListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(FetchResultListener listener) {
+		listeners.remove(listener);
+	}
+	
+	public synchronized void start() {
+		if (scheduler != null){
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(fetcher.getName() + "-watch"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				refreshAndNotify();
+			}
+		}, 0, periodMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	public synchronized void stop() {
+		if (scheduler != null){
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+	
+	public synchronized FetchResult refresh() throws FetchException {
+		try {
+			LocalDate now = new LocalDate();
+			if (prestations == null || !now.equals(today)){
+				refreshMonth(now);
+			} else {
+				refreshToday();
+			}
+			Prestation todaysPrestation = todayIndex >= 0 ? prestations.get(todayIndex) : null;
+			return fetcher.toFetchResult(today, new ArrayList<Prestation>(prestations), aggregation, todaysPrestation);
+		} catch (IOException e) {
+			throw new FetchException(e);
+		}
+	}
+	
+	private void refreshAndNotify() {
+		try {
+			FetchResult result = refresh();
+			for (FetchResultListener listener : listeners) {
+				listener.resultFetched(result);
+			}
+		} catch (FetchException e) {
+			for (FetchResultListener listener : listeners) {
+				listener.fetchFailed(e);
+			}
+		}
+	}
+	
+	private void refreshMonth(LocalDate now) throws IOException {
+		List<LocalDate> dates = fetcher.getDaysInMonth(now);
+		Map<LocalDate, DayRegistration> monthDays = fetcher.fetchDayRegistrations(account, dates, FetchContext.unbounded());
+		List<Prestation> monthPrestations = fetcher.toPrestations(account, dates, monthDays);
+		aggregation = PrestationAggregator.aggregate(monthPrestations);
+		days = monthDays;
+		prestations = monthPrestations;
+		today = now;
+		todayIndex = indexOf(today);
+	}
+	
+	private void refreshToday() throws IOException {
+		Prestation newPrestation = fetcher.toPrestation(fetcher.fetchDayRegistration(account, today, FetchContext.unbounded()));
+		boolean shown = fetcher.isShown(newPrestation);
+		if (todayIndex < 0 && !shown){
+			return;
+		}
+		if (todayIndex < 0 || !shown){
+			refreshMonth(today);
+			return;
+		}
+		Prestation oldPrestation = prestations.set(todayIndex, newPrestation);
+		aggregation.replace(todayIndex, oldPrestation, newPrestation);
+		updateWeekResult();
+	}
+	
+	private void updateWeekResult() {
+		int weekKey = PrestationAggregation.weekKey(today);
+		int lastOfWeek = todayIndex;
+		while (lastOfWeek + 1 < prestations.size() && PrestationAggregation.weekKey(prestations.get(lastOfWeek + 1).getDay()) == weekKey) {
+			lastOfWeek++;
+		}
+		Prestation lastPrestationOfWeek = prestations.get(lastOfWeek);
+		if (lastOfWeek != todayIndex){
+			lastPrestationOfWeek = fetcher.toPrestation(days.get(lastPrestationOfWeek.getDay()));
+			prestations.set(lastOfWeek, lastPrestationOfWeek);
+		}
+		PrestationAggregator.closeWeek(lastPrestationOfWeek, aggregation.getWeek(today));
+	}
+	
+	private int indexOf(LocalDate date) {
+		for (int i = 0; i < prestations.size(); i++) {
+			if (prestations.get(i).getDay().isEqual(date)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,134 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An answer whose body is still to be read. Closing it hands the connection back for reuse.
+ */
+public class TransportResponse implements Closeable {
+	
+	private final URL url;
+	private final int statusCode;
+	private final String charset;
+	private final CountingInputStream wireBody;
+	private final InputStream body;
+	private final long startNanos;
+	private final long headersNanos;
+	private final Closeable release;
+	private long closedNanos;
+	
+	/**
+	 * @param release closed together with the response, may be null
+	 */
+	public TransportResponse(URL url, int statusCode, String charset, InputStream body, long startNanos, Closeable release) {
+		this(url, statusCode, charset, new CountingInputStream(body), null, startNanos, release);
+	}
+	
+	private TransportResponse(URL url, int statusCode, String charset, CountingInputStream wireBody, InputStream decodedBody, long startNanos, Closeable release) {
+		this.url = url;
+		this.statusCode = statusCode;
+		this.charset = charset;
+		this.wireBody = wireBody;
+		this.body = decodedBody != null ? decodedBody : wireBody;
+		this.startNanos = startNanos;
+		this.headersNanos = System.nanoTime();
+		this.release = release;
+	}
+	
+	/**
+	 * Like the constructor, for a gzip-encoded body that is decoded while it is read.
+	 */
+	public static TransportResponse gzipped(URL url, int statusCode, String charset, InputStream body, long startNanos, Closeable release) throws IOException {
+		CountingInputStream wireBody = new CountingInputStream(body);
+		return new TransportResponse(url, statusCode, charset, wireBody, new GZIPInputStream(wireBody), startNanos, release);
+	}
+	
+	/**
+	 * @return the same answer, timed from an earlier start and handed back through another release, which should close this response
+	 */
+	TransportResponse withRelease(long startNanos, Closeable release) {
+		return new TransportResponse(url, statusCode, charset, wireBody, body, startNanos, release);
+	}
+	
+	public URL getUrl() {
+		return url;
+	}
+	
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * @return the charset announced by the server, or null when it did not announce one
+	 */
+	public String getCharset() {
+		return charset;
+	}
+	
+	public InputStream getBody() {
+		return body;
+	}
+	
+	/**
+	 * @return the number of bytes read from the connection so far, before the body was decoded
+	 */
+	public long getBytesReceived() {
+		return wireBody.count;
+	}
+	
+	public long getTimeToHeadersNanos() {
+		return headersNanos - startNanos;
+	}
+	
+	/**
+	 * @return the time from sending the request until the response was closed, or until now while it is still open
+	 */
+	public long getElapsedNanos() {
+		return (closedNanos != 0 ? closedNanos : System.nanoTime()) - startNanos;
+	}
+
+	public void close() throws IOException {
+		if (closedNanos == 0){
+			closedNanos = System.nanoTime();
+		}
+		try {
+			body.close();
+		} finally {
+			if (release != null){
+				release.close();
+			}
+		}
+	}
+	
+	private static class CountingInputStream extends FilterInputStream {
+		
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+		
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1){
+				count++;
+			}
+			return b;
+		}
+		
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if (read > 0){
+				count += read;
+			}
+			return read;
+		}
+		
+	}
+
+}
@@ -0,0 +1,144 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Transport on the JDK's HttpURLConnection, which keeps connections alive and pools them per host 
+ * (sized by the http.maxConnections system property) as long as every response body is read and closed.
+ * Responses are requested gzip compressed. A postback that is redirected is followed with a GET, like a browser does;
+ * the connection cannot follow it by itself because the form is streamed.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+	
+	private static final String USER_AGENT   = "Mozilla";
+	private static final String FORM_CONTENT = "application/x-www-form-urlencoded; charset=UTF-8";
+	private static final String GZIP 		 = "gzip";
+	
+	public TransportResponse get(String url, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+		return get(url, cookies, timeoutMillis, context, System.nanoTime());
+	}
+	
+	private TransportResponse get(String url, CookieJar cookies, int timeoutMillis, FetchContext context, long startNanos) throws IOException {
+		HttpURLConnection connection = open(url, cookies, timeoutMillis);
+		connection.setRequestMethod("GET");
+		return execute(connection, null, cookies, context, startNanos);
+	}
+
+	public TransportResponse post(String url, byte[] formBody, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+		long startNanos = System.nanoTime();
+		HttpURLConnection connection = open(url, cookies, timeoutMillis);
+		connection.setRequestMethod("POST");
+		connection.setInstanceFollowRedirects(false);
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", FORM_CONTENT);
+		connection.setFixedLengthStreamingMode(formBody.length);
+		return execute(connection, formBody, cookies, context, startNanos);
+	}
+	
+	private HttpURLConnection open(String url, CookieJar cookies, int timeoutMillis) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setConnectTimeout(timeoutMillis);
+		connection.setReadTimeout(timeoutMillis);
+		connection.setUseCaches(false);
+		connection.setRequestProperty("User-Agent", USER_AGENT);
+		connection.setRequestProperty("Accept-Encoding", GZIP);
+		connection.setRequestProperty("Connection", "keep-alive");
+		String cookieHeader = cookies.toHeader();
+		if (cookieHeader != null){
+			connection.setRequestProperty("Cookie", cookieHeader);
+		}
+		return connection;
+	}
+	
+	private TransportResponse execute(final HttpURLConnection connection, byte[] formBody, CookieJar cookies, final FetchContext context, long startNanos) throws IOException {
+		final Closeable abort = new Closeable() {
+			public void close() {
+				connection.disconnect();
+			}
+		};
+		Closeable release = new Closeable() {
+			public void close() {
+				context.unregister(abort);
+			}
+		};
+		context.register(abort);
+		try {
+			if (formBody != null){
+				write(connection, formBody);
+			}
+			int statusCode = connection.getResponseCode();
+			storeCookies(connection, cookies);
+			String location = connection.getHeaderField("Location");
+			if (formBody != null && isRedirect(statusCode) && location != null){
+				drain(connection.getInputStream());
+				release.close();
+				return get(new URL(connection.getURL(), location).toString(), cookies, connection.getReadTimeout(), context, startNanos);
+			}
+			if (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST){
+				drain(connection.getErrorStream());
+				throw new IOException("HTTP " + statusCode + " from " + connection.getURL());
+			}
+			InputStream body = connection.getInputStream();
+			if (body == null){
+				body = new ByteArrayInputStream(new byte[0]);
+			} else if (GZIP.equalsIgnoreCase(connection.getContentEncoding())){
+				return TransportResponse.gzipped(connection.getURL(), statusCode, charset(connection.getContentType()), body, startNanos, release);
+			}
+			return new TransportResponse(connection.getURL(), statusCode, charset(connection.getContentType()), body, startNanos, release);
+		} catch (IOException e) {
+			release.close();
+			context.check();
+			throw e;
+		}
+	}
+	
+	private void write(HttpURLConnection connection, byte[] formBody) throws IOException {
+		OutputStream out = connection.getOutputStream();
+		try {
+			out.write(formBody);
+		} finally {
+			out.close();
+		}
+	}
+	
+	private boolean isRedirect(int statusCode) {
+		return statusCode == HttpURLConnection.HTTP_MOVED_PERM || statusCode == HttpURLConnection.HTTP_MOVED_TEMP || statusCode == HttpURLConnection.HTTP_SEE_OTHER;
+	}
+	
+	private void storeCookies(HttpURLConnection connection, CookieJar cookies) {
+		for (Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+			if ("Set-Cookie".equalsIgnoreCase(header.getKey())){
+				cookies.store(header.getValue());
+			}
+		}
+	}
+	
+	private String charset(String contentType) {
+		String charset = StringUtils.substringAfter(StringUtils.lowerCase(contentType), "charset=");
+		return StringUtils.isEmpty(charset) ? null : StringUtils.strip(charset.split(";")[0].trim(), "\"");
+	}
+	
+	private void drain(InputStream stream) throws IOException {
+		if (stream == null){
+			return;
+		}
+		try {
+			byte[] buffer = new byte[4096];
+			while (stream.read(buffer) != -1) {
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+}
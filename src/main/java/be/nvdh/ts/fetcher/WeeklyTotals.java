@@ -0,0 +1,65 @@
+package be.nvdh.ts.fetcher;
+
+/**
+ * Totals per row and per week, each field in its own primitive array with the weeks of a row next to each other.
+ */
+class WeeklyTotals {
+	
+	private final int weeks;
+	private final long[] timeSeconds;
+	private final long[] overtimeSeconds;
+	private final int[] days;
+	private final int[] holidayDays;
+	private final int[] irregularDays;
+	
+	WeeklyTotals(int rows, int weeks) {
+		this.weeks = weeks;
+		this.timeSeconds = new long[rows * weeks];
+		this.overtimeSeconds = new long[rows * weeks];
+		this.days = new int[rows * weeks];
+		this.holidayDays = new int[rows * weeks];
+		this.irregularDays = new int[rows * weeks];
+	}
+	
+	void add(int row, int week, int timeSeconds, int overtimeSeconds, boolean holiday, boolean irregular) {
+		int cell = row * weeks + week;
+		this.timeSeconds[cell] += timeSeconds;
+		this.overtimeSeconds[cell] += overtimeSeconds;
+		this.days[cell]++;
+		if (holiday){
+			this.holidayDays[cell]++;
+		}
+		if (irregular){
+			this.irregularDays[cell]++;
+		}
+	}
+	
+	/**
+	 * Adds every cell of totals of the same shape.
+	 */
+	void addAll(WeeklyTotals other) {
+		for (int cell = 0; cell < days.length; cell++) {
+			timeSeconds[cell] += other.timeSeconds[cell];
+			overtimeSeconds[cell] += other.overtimeSeconds[cell];
+			days[cell] += other.days[cell];
+			holidayDays[cell] += other.holidayDays[cell];
+			irregularDays[cell] += other.irregularDays[cell];
+		}
+	}
+	
+	/**
+	 * @return the totals of the row over the weeks from the first up to and including the last
+	 */
+	ReportTotals totals(int row, int firstWeek, int lastWeek) {
+		ReportTotals totals = new ReportTotals();
+		for (int cell = row * weeks + firstWeek; cell <= row * weeks + lastWeek; cell++) {
+			totals.add(timeSeconds[cell], overtimeSeconds[cell], days[cell], holidayDays[cell], irregularDays[cell]);
+		}
+		return totals;
+	}
+	
+	int getWeeks() {
+		return weeks;
+	}
+
+}
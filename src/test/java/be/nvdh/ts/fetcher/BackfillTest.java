@@ -0,0 +1,72 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BackfillTest {
+	
+	private File directory;
+	private FakeElineTransport transport = new FakeElineTransport();
+	private ElineFetcher fetcher = new ElineFetcher();
+	
+	@Before
+	public void createFetcher() throws IOException {
+		directory = Files.createTempDirectory("backfill").toFile();
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("url", "http://eline.test/default.aspx");
+		config.put("minutesPerDay", "480");
+		config.put("minutesLunch", "30");
+		config.put("metrics", "none");
+		config.put("historyDir", new File(directory, "history").getPath());
+		fetcher.init(config);
+		fetcher.setTransport(transport);
+	}
+	
+	@After
+	public void closeFetcher() {
+		fetcher.close();
+		TestFiles.delete(directory);
+	}
+	
+	@Test
+	public void monthsGoToTheHistoryOfTheFetcherWithoutThrottlingIt() throws Exception {
+		Account account = new Account("jan", "http://eline.test/default.aspx");
+		LocalDate month = new LocalDate().minusMonths(3).withDayOfMonth(1);
+		List<BackfillJob> jobs = Arrays.asList(new BackfillJob(account, month.minusMonths(1), month));
+		Backfill backfill = new Backfill(fetcher, backfillConfig(), new File(directory, "checkpoint"));
+		
+		BackfillReport report = backfill.run(jobs);
+		assertEquals(report.toString(), 2, report.getCompleted());
+		assertSame(transport, fetcher.getTransport());
+		assertTrue(transport.getDayPageRequests().size() >= 28);
+		
+		transport.clearDayPageRequests();
+		fetcher.fetchRange(account, month, month.plusMonths(1).minusDays(1));
+		assertEquals(0, transport.getDayPageRequests().size());
+		
+		report = new Backfill(fetcher, backfillConfig(), new File(directory, "checkpoint")).run(jobs);
+		assertEquals(2, report.getSkipped());
+		assertEquals(0, transport.getDayPageRequests().size());
+	}
+	
+	private Map<String, String> backfillConfig() {
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("backfillRequestsPerSecond", "1000");
+		return config;
+	}
+
+}
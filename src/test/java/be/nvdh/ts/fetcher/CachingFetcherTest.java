@@ -0,0 +1,169 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Test;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.domain.Prestation;
+import be.nvdh.ts.exception.FetchException;
+import be.nvdh.ts.fetch.Fetcher;
+
+public class CachingFetcherTest {
+	
+	private static final Date MARCH = new LocalDate(2020, 3, 2).toDate();
+	
+	private final GatedFetcher fetcher = new GatedFetcher();
+	private final CachingFetcher cachingFetcher = new CachingFetcher(fetcher);
+	
+	@After
+	public void releaseFetcher() {
+		fetcher.gate.release(100);
+		cachingFetcher.close();
+	}
+	
+	@Test
+	public void staleResultIsServedWhileItIsRefreshedInTheBackground() throws FetchException {
+		cachingFetcher.init(config("0", "900"));
+		fetcher.gate.release();
+		FetchResult first = cachingFetcher.fetch(MARCH);
+		waitForNextMillisecond();
+		
+		assertSame(first, cachingFetcher.fetch(MARCH));
+		assertSame(first, cachingFetcher.fetch(MARCH));
+		assertEquals(1, cachingFetcher.getRefreshes());
+		
+		fetcher.gate.release();
+		FetchResult refreshed = cachingFetcher.fetch(MARCH);
+		while (refreshed == first) {
+			Thread.yield();
+			refreshed = cachingFetcher.fetch(MARCH);
+		}
+		assertSame(fetcher.result(1), refreshed);
+		assertEquals(1, cachingFetcher.getMisses());
+	}
+	
+	@Test
+	public void resultOlderThanTheHardTimeToLiveIsFetchedAgain() throws FetchException {
+		cachingFetcher.init(config("0", "0"));
+		fetcher.gate.release(2);
+		FetchResult first = cachingFetcher.fetch(MARCH);
+		waitForNextMillisecond();
+		
+		FetchResult second = cachingFetcher.fetch(MARCH);
+		assertSame(fetcher.result(1), second);
+		assertEquals(2, cachingFetcher.getMisses());
+		assertEquals(0, cachingFetcher.getRefreshes());
+		assertSame(first, fetcher.result(0));
+	}
+	
+	@Test
+	public void freshResultIsServedWithoutFetching() throws FetchException {
+		cachingFetcher.init(config("60", "900"));
+		fetcher.gate.release();
+		FetchResult first = cachingFetcher.fetch(MARCH);
+		assertSame(first, cachingFetcher.fetch(new LocalDate(2020, 3, 20).toDate()));
+		assertEquals(1, fetcher.fetches());
+		assertEquals(1, cachingFetcher.getHits());
+	}
+	
+	@Test
+	public void refreshStartedBeforeInvalidateIsNotCached() throws Exception {
+		cachingFetcher.init(config("0", "900"));
+		fetcher.gate.release();
+		cachingFetcher.fetch(MARCH);
+		waitForNextMillisecond();
+		cachingFetcher.fetch(MARCH);
+		assertEquals(1, cachingFetcher.getRefreshes());
+		
+		cachingFetcher.invalidate();
+		fetcher.gate.release();
+		cachingFetcher.close();
+		assertTrue(cachingFetcher.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(2, fetcher.fetches());
+		assertEquals(0, cachingFetcher.size());
+	}
+	
+	@Test
+	public void closedFetcherServesStaleResultsWithoutRefreshing() throws FetchException {
+		cachingFetcher.init(config("0", "900"));
+		fetcher.gate.release();
+		FetchResult first = cachingFetcher.fetch(MARCH);
+		cachingFetcher.close();
+		waitForNextMillisecond();
+		
+		assertSame(first, cachingFetcher.fetch(MARCH));
+		assertSame(first, cachingFetcher.fetch(MARCH));
+		assertEquals(0, cachingFetcher.getRefreshes());
+		assertEquals(1, fetcher.fetches());
+	}
+	
+	private Map<String, String> config(String softTtlSeconds, String hardTtlSeconds) {
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("resultSoftTtlSeconds", softTtlSeconds);
+		config.put("resultHardTtlSeconds", hardTtlSeconds);
+		return config;
+	}
+	
+	/**
+	 * Cached results are aged in milliseconds; a time to live of zero expires them once the clock has moved on.
+	 */
+	private void waitForNextMillisecond() {
+		long now = System.currentTimeMillis();
+		while (System.currentTimeMillis() == now) {
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Hands out a new result for every fetch the gate lets through.
+	 */
+	private static class GatedFetcher implements Fetcher {
+		
+		private final Semaphore gate = new Semaphore(0);
+		private final List<FetchResult> results = new ArrayList<FetchResult>();
+		
+		public FetchResult fetch(Date dateToFetch) throws FetchException {
+			gate.acquireUninterruptibly();
+			FetchResult result = new FetchResult(new LocalDate(), new LocalDate(dateToFetch), new ArrayList<Prestation>(), Duration.ZERO, Duration.ZERO, null);
+			synchronized (results) {
+				results.add(result);
+			}
+			return result;
+		}
+		
+		FetchResult result(int index) {
+			synchronized (results) {
+				return results.get(index);
+			}
+		}
+		
+		int fetches() {
+			synchronized (results) {
+				return results.size();
+			}
+		}
+		
+		public void init(Map<String, String> config) {
+		}
+		
+		public String getName() {
+			return "gated";
+		}
+		
+	}
+
+}
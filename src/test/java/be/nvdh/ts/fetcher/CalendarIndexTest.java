@@ -0,0 +1,78 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+public class CalendarIndexTest {
+	
+	private static final String CALENDAR_TARGET = "registraties$CalThisMonth";
+	private static final LocalDate DAY_ZERO = new LocalDate(2000, 1, 1);
+	
+	@Test
+	public void indexesTheDaysAndNavigationLinksOfTheDisplayedMonth() {
+		LocalDate march = new LocalDate(2020, 3, 1);
+		StringBuilder calendar = new StringBuilder();
+		calendar.append(postBackLink(CALENDAR_TARGET, "V" + code(march.minusMonths(1))));
+		calendar.append(postBackLink(CALENDAR_TARGET, "V" + code(march.plusMonths(1))));
+		calendar.append(postBackLink("mnuHoofd", code(new LocalDate(2020, 4, 1))));
+		for (LocalDate day = new LocalDate(2020, 2, 24); day.isBefore(march.plusMonths(1)); day = day.plusDays(1)) {
+			calendar.append(postBackLink(CALENDAR_TARGET, code(day)));
+		}
+		
+		CalendarIndex index = CalendarIndex.build(Jsoup.parse("<html><body>" + calendar + "</body></html>"), CALENDAR_TARGET);
+		assertEquals(march, index.getMonth());
+		assertEquals(code(new LocalDate(2020, 3, 17)), index.getDayCode(new LocalDate(2020, 3, 17)));
+		assertEquals(code(new LocalDate(2020, 2, 24)), index.getDayCode(new LocalDate(2020, 2, 24)));
+		assertNull(index.getDayCode(new LocalDate(2020, 4, 1)));
+		assertEquals("V" + code(march.minusMonths(1)), index.getNavigationCode(new LocalDate(2019, 10, 1)));
+		assertEquals("V" + code(march.plusMonths(1)), index.getNavigationCode(new LocalDate(2021, 1, 1)));
+	}
+	
+	@Test
+	public void pageWithoutCalendarHasNoMonth() {
+		CalendarIndex index = CalendarIndex.build(Jsoup.parse("<html><body><div id=\"welkom\">Welkom</div></body></html>"), CALENDAR_TARGET);
+		assertNull(index.getMonth());
+		assertNull(index.getNavigationCode(new LocalDate(2020, 3, 1)));
+	}
+	
+	@Test
+	public void sessionNavigatesTheCalendarBackAndForth() throws IOException {
+		ElineSession session = new ElineSession("http://eline.test/default.aspx", new FakeElineTransport(), FetchMetrics.DISABLED);
+		LocalDate thisMonth = new LocalDate().withDayOfMonth(1);
+		FetchContext context = FetchContext.unbounded();
+		
+		assertEquals(thisMonth.minusMonths(5), session.calendarPage(thisMonth.minusMonths(5).plusDays(10), context).getMonth());
+		assertEquals(thisMonth.plusMonths(2), session.calendarPage(thisMonth.plusMonths(2), context).getMonth());
+		assertEquals(thisMonth.minusMonths(14), session.calendarPage(thisMonth.minusMonths(14), context).getMonth());
+		assertEquals(code(thisMonth.minusMonths(14).plusDays(3)), session.calendarPage(thisMonth.minusMonths(14), context).getIndex().getDayCode(thisMonth.minusMonths(14).plusDays(3)));
+	}
+	
+	@Test
+	public void sessionKeepsTheMostRecentlyVisitedMonthsOnly() throws IOException {
+		ElineSession session = new ElineSession("http://eline.test/default.aspx", new FakeElineTransport(), FetchMetrics.DISABLED);
+		LocalDate thisMonth = new LocalDate().withDayOfMonth(1);
+		FetchContext context = FetchContext.unbounded();
+		for (int months = 0; months < 6; months++) {
+			session.calendarPage(thisMonth.minusMonths(months), context);
+		}
+		assertEquals(3, session.calendarPageCount());
+		assertEquals(thisMonth, session.calendarPage(thisMonth, context).getMonth());
+		assertEquals(3, session.calendarPageCount());
+	}
+	
+	private String postBackLink(String target, String argument) {
+		return "<a href=\"javascript:__doPostBack('" + target + "','" + argument + "')\">" + argument + "</a>";
+	}
+	
+	private String code(LocalDate date) {
+		return String.valueOf(Days.daysBetween(DAY_ZERO, date).getDays());
+	}
+
+}
@@ -0,0 +1,142 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DayCacheTest {
+	
+	private File directory;
+	
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("daycache").toFile();
+	}
+	
+	@After
+	public void deleteDirectory() {
+		TestFiles.delete(directory);
+	}
+	
+	@Test
+	public void flushedDaysAreReadBackByANewCache() throws IOException {
+		LocalDate date = new LocalDate(2020, 3, 2);
+		DayCache cache = new DayCache(directory.getPath());
+		cache.put(new DayRegistration(date, Arrays.asList(new LocalTime(8, 0), new LocalTime(16, 30)), Arrays.asList(new LocalTime(12, 0)), "L", "Missing tick", Duration.standardHours(8)));
+		cache.flush();
+		
+		DayRegistration day = new DayCache(directory.getPath()).get(date);
+		assertEquals(Arrays.asList(new LocalTime(8, 0), new LocalTime(16, 30)), day.getTickTimes());
+		assertEquals(Arrays.asList(new LocalTime(12, 0)), day.getManualRegistrations());
+		assertEquals("L", day.getRawDayCode());
+		assertEquals("Missing tick", day.getIrregularities());
+		assertEquals(Duration.standardHours(8), day.getTotalDuration());
+		assertNull(new DayCache(directory.getPath()).get(date.plusDays(1)));
+	}
+	
+	@Test
+	public void cacheWithoutDirectoryKeepsNothing() throws IOException {
+		DayCache cache = new DayCache(null);
+		cache.put(new DayRegistration(new LocalDate(2020, 3, 2), new ArrayList<LocalTime>(), new ArrayList<LocalTime>(), "L", "", Duration.ZERO));
+		assertFalse(cache.isEnabled());
+		assertNull(cache.get(new LocalDate(2020, 3, 2)));
+	}
+	
+	@Test
+	public void onlyClosedDaysAreServedFromTheCache() throws Exception {
+		FakeElineTransport transport = new FakeElineTransport();
+		ElineFetcher fetcher = new ElineFetcher();
+		fetcher.init(config());
+		fetcher.setTransport(transport);
+		try {
+			LocalDate today = new LocalDate();
+			fetcher.fetchRange(today.minusDays(9), today);
+			List<LocalDate> openDays = new ArrayList<LocalDate>();
+			for (LocalDate date : transport.getDayPageRequests()) {
+				if (!date.isBefore(today.minusDays(1))){
+					openDays.add(date);
+				}
+			}
+			assertTrue(transport.getDayPageRequests().size() > openDays.size());
+			
+			transport.clearDayPageRequests();
+			fetcher.fetchRange(today.minusDays(9), today);
+			assertEquals(new TreeSet<LocalDate>(openDays), new TreeSet<LocalDate>(transport.getDayPageRequests()));
+			
+			DayCache cache = new DayCache(directory.getPath());
+			assertNull(cache.get(today));
+			assertNull(cache.get(today.minusDays(1)));
+		} finally {
+			fetcher.close();
+		}
+	}
+	
+	@Test
+	public void daysAfterTodayAreKeptInMemoryForTheirTimeToLive() throws Exception {
+		FakeElineTransport transport = new FakeElineTransport();
+		ElineFetcher fetcher = new ElineFetcher();
+		fetcher.init(config());
+		fetcher.setTransport(transport);
+		try {
+			LocalDate today = new LocalDate();
+			fetcher.fetchRange(today.minusDays(9), today.plusDays(5));
+			assertTrue(transport.getDayPageRequests().contains(today.plusDays(5)));
+			
+			transport.clearDayPageRequests();
+			fetcher.fetchRange(today.minusDays(9), today.plusDays(5));
+			assertEquals(new TreeSet<LocalDate>(Arrays.asList(today.minusDays(1), today)), new TreeSet<LocalDate>(transport.getDayPageRequests()));
+			assertNull(new DayCache(directory.getPath()).get(today.plusDays(1)));
+		} finally {
+			fetcher.close();
+		}
+	}
+	
+	@Test
+	public void daysAfterTodayAreFetchedAgainWithoutTimeToLive() throws Exception {
+		FakeElineTransport transport = new FakeElineTransport();
+		ElineFetcher fetcher = new ElineFetcher();
+		Map<String, String> config = config();
+		config.put("futureDaysTtlMinutes", "0");
+		fetcher.init(config);
+		fetcher.setTransport(transport);
+		try {
+			LocalDate today = new LocalDate();
+			fetcher.fetchRange(today.minusDays(9), today.plusDays(5));
+			transport.clearDayPageRequests();
+			fetcher.fetchRange(today.minusDays(9), today.plusDays(5));
+			assertEquals(7, transport.getDayPageRequests().size());
+			assertTrue(transport.getDayPageRequests().contains(today.plusDays(5)));
+		} finally {
+			fetcher.close();
+		}
+	}
+	
+	private Map<String, String> config() {
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("url", "http://eline.test/default.aspx");
+		config.put("minutesPerDay", "480");
+		config.put("minutesLunch", "30");
+		config.put("metrics", "none");
+		config.put("cacheDir", directory.getPath());
+		return config;
+	}
+
+}
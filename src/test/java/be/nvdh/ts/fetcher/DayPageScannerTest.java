@@ -0,0 +1,81 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+public class DayPageScannerTest {
+	
+	private static final LocalDate DATE = new LocalDate(2020, 3, 2);
+	
+	private static final String PAGE = "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\">"
+			+ "<html><head><script type=\"text/javascript\">if (a < b && c > d) { document.write('<span id=\"registraties_lblTotaalGepresteerd\">1u0</span>'); }</script></head>"
+			+ "<body><form name=\"Form1\" method=\"post\" action=\"default.aspx\" id=\"Form1\">"
+			+ "<input type=\"hidden\" name=\"__EVENTTARGET\" id=\"__EVENTTARGET\" value=\"\" />"
+			+ "<input type=\"hidden\" name=\"__VIEWSTATE\" id=\"__VIEWSTATE\" value=\"dDwtMTA4NzA=\" />"
+			+ "<input type=\"hidden\" name=\"__EVENTVALIDATION\" id=\"__EVENTVALIDATION\" value=\"/wEW&amp;Ag\" />"
+			+ "<!-- <span id=\"registraties_dgrPlanningen__ctl2_lblCode\">CAO</span> -->"
+			+ "<table id=\"registraties_dgrPlanningen\"><tr><td><span id=\"registraties_dgrPlanningen__ctl2_lblCode\">FEE</span></td>"
+			+ "<td><span id=\"registraties_dgrPlanningen__ctl2_lblOmschrijving\">Feestdag</span></td></tr>"
+			+ "<tr><td><span id=\"registraties_dgrPlanningen__ctl3_lblCode\">L</span></td></tr></table>"
+			+ "<table id=\"registraties_dgrRegistraties\">"
+			+ "<tr><td><span id=\"registraties_dgrRegistraties__ctl2_lblRegistratieTijd\" title=\"a > b\">07:45</span></td>"
+			+ "<td><span id=\"registraties_dgrRegistraties__ctl2_lblRichting\">IN</span></td></tr>"
+			+ "<tr><td><span id=\"registraties_dgrRegistraties__ctl3_lblRegistratieTijd\"> 12:00 </span></td></tr>"
+			+ "<tr><td><span id=\"registraties_dgrRegistraties__ctl4_lblRegistratieTijd\"></span></td></tr>"
+			+ "<tr><td><SPAN ID=\"registraties_dgrRegistraties__ctl5_lblRegistratieTijd\">12:30</SPAN></td></tr>"
+			+ "<tr><td><span id='registraties_dgrRegistraties__ctl6_lblRegistratieTijd'>16:15</span><br/></td></tr></table>"
+			+ "<table id=\"registraties_dgrRgAanvragen\"><tr><td><span id=\"registraties_dgrRgAanvragen__ctl2_lblRgaTijdstip\">17:00</span></td></tr></table>"
+			+ "<table id=\"registraties_dgrOnregelmatigheden\"><tr><td><span id=\"registraties_dgrOnregelmatigheden__ctl2_EmLabel2\">Badge <b>vergeten</b> &amp; manueel</span></td></tr></table>"
+			+ "<div>Totaal: <span id=\"registraties_lblTotaalGepresteerd\">8u15</span></div>"
+			+ "</form></body></html>";
+	
+	@Test
+	public void scannerExtractsTheSameDayAsTheDocument() throws IOException {
+		DayRegistration parsed = DayPageExtractor.extract(Jsoup.parse(PAGE), DATE);
+		DayRegistration scanned = scan(PAGE).getExtractor().toDayRegistration(DATE);
+		
+		assertEquals(Arrays.asList(new LocalTime(7, 45), new LocalTime(12, 0), new LocalTime(12, 30), new LocalTime(16, 15)), parsed.getTickTimes());
+		assertEquals(parsed.getTickTimes(), scanned.getTickTimes());
+		assertEquals(Arrays.asList(new LocalTime(17, 0)), scanned.getManualRegistrations());
+		assertEquals(parsed.getManualRegistrations(), scanned.getManualRegistrations());
+		assertEquals("FEE", scanned.getRawDayCode());
+		assertEquals(parsed.getRawDayCode(), scanned.getRawDayCode());
+		assertEquals("Badge vergeten & manueel", scanned.getIrregularities());
+		assertEquals(parsed.getIrregularities(), scanned.getIrregularities());
+		assertEquals(Duration.standardMinutes(8 * 60 + 15), scanned.getTotalDuration());
+		assertEquals(parsed.getTotalDuration(), scanned.getTotalDuration());
+		assertEquals(parsed.getFragments(), scanned.getFragments());
+	}
+	
+	@Test
+	public void scannerKeepsTheHiddenFieldsButOnlyTheLengthOfTheViewState() throws IOException {
+		DayPageScanner scanner = scan(PAGE);
+		assertTrue(scanner.hasViewState());
+		assertEquals("dDwtMTA4NzA=".length(), scanner.getViewStateLength());
+		assertFalse(scanner.getHiddenFields().containsKey("__VIEWSTATE"));
+		assertEquals("/wEW&Ag", scanner.getHiddenFields().get("__EVENTVALIDATION"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void pageWithoutTotalIsRejected() throws IOException {
+		scan("<html><body><span id=\"registraties_dgrRegistraties__ctl2_lblRegistratieTijd\">07:45</span></body></html>").getExtractor().toDayRegistration(DATE);
+	}
+	
+	private DayPageScanner scan(String page) throws IOException {
+		DayPageScanner scanner = new DayPageScanner(new DayPageExtractor());
+		scanner.scan(new StringReader(page));
+		return scanner;
+	}
+
+}
@@ -0,0 +1,90 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Test;
+
+public class DayRetryTest {
+	
+	private static final LocalDate DAY = new LocalDate().minusMonths(2).withDayOfMonth(10);
+	
+	private final FakeElineTransport transport = new FakeElineTransport();
+	private final ElineFetcher fetcher = new ElineFetcher();
+	
+	@After
+	public void closeFetcher() {
+		fetcher.close();
+	}
+	
+	@Test
+	public void failedDayPageIsAskedAgainUpToTheNumberOfRetries() throws IOException {
+		init("2", "1", "0");
+		transport.failDayPage(DAY, 2);
+		assertEquals(DAY, fetcher.fetchDayRegistration(fetcher.getDefaultAccount(), DAY, FetchContext.unbounded()).getDate());
+		assertEquals(Collections.nCopies(3, DAY), transport.getDayPageRequests());
+		
+		transport.clearDayPageRequests();
+		transport.failDayPage(DAY, 3);
+		try {
+			fetcher.fetchDayRegistration(fetcher.getDefaultAccount(), DAY, FetchContext.unbounded());
+			fail("the day page failed more often than it was retried");
+		} catch (IOException e) {
+			assertEquals(3, transport.getDayPageRequests().size());
+		}
+	}
+	
+	@Test
+	public void backoffIsCutShortByTheDeadline() throws IOException {
+		init("5", "4000", "0");
+		fetcher.fetchDayRegistration(fetcher.getDefaultAccount(), DAY.plusDays(1), FetchContext.unbounded());
+		transport.clearDayPageRequests();
+		transport.failDayPage(DAY, 10);
+		long startNanos = System.nanoTime();
+		try {
+			fetcher.fetchDayRegistration(fetcher.getDefaultAccount(), DAY, FetchContext.withTimeout(300));
+			fail("the day page kept failing until the deadline");
+		} catch (SocketTimeoutException e) {
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < 1500);
+			assertEquals(1, transport.getDayPageRequests().size());
+		}
+	}
+	
+	@Test
+	public void slowDayPageIsHedgedWithASecondRequest() throws Exception {
+		init("0", "1", "90");
+		LocalDate month = DAY.withDayOfMonth(1);
+		fetcher.fetchRange(month, month.plusMonths(1).minusDays(1));
+		transport.clearDayPageRequests();
+		
+		transport.delayDayPage(DAY, 5000);
+		long startNanos = System.nanoTime();
+		assertEquals(DAY, fetcher.fetchDayRegistration(fetcher.getDefaultAccount(), DAY, FetchContext.unbounded()).getDate());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < 2500);
+		assertEquals(Collections.nCopies(2, DAY), transport.getDayPageRequests());
+	}
+	
+	private void init(String dayRetries, String retryBackoffMillis, String hedgePercentile) {
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("url", "http://eline.test/default.aspx");
+		config.put("minutesPerDay", "480");
+		config.put("minutesLunch", "30");
+		config.put("metrics", "none");
+		config.put("dayRetries", dayRetries);
+		config.put("retryBackoffMillis", retryBackoffMillis);
+		config.put("hedgePercentile", hedgePercentile);
+		fetcher.init(config);
+		fetcher.setTransport(transport);
+	}
+
+}
@@ -0,0 +1,150 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+
+/**
+ * Answers the requests of an {@link ElineSession} the way eline does, without a server: every day has a clock registration
+ * at 8:00 and 16:30 and a total of 8 hours. The dates of the day pages that were asked for are kept.
+ * The page of a day can be made to fail a number of times, or to answer late once.
+ */
+class FakeElineTransport implements HttpTransport {
+	
+	private static final String UTF_8 = "UTF-8";
+	private static final String CALENDAR_TARGET = "registraties$CalThisMonth";
+	private static final String EVENTARGUMENT = "__EVENTARGUMENT";
+	private static final String NAVIGATION_PREFIX = "V";
+	private static final LocalDate DAY_ZERO = new LocalDate(2000, 1, 1);
+	
+	private final List<LocalDate> dayPageRequests = new ArrayList<LocalDate>();
+	private final Map<LocalDate, Integer> failures = new HashMap<LocalDate, Integer>();
+	private final Map<LocalDate, Long> delays = new HashMap<LocalDate, Long>();
+	
+	public TransportResponse get(String url, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+		cookies.store(Arrays.asList("ASP.NET_SessionId=fake; path=/"));
+		return response(url, page("<div id=\"welkom\">Welkom</div>"));
+	}
+	
+	public TransportResponse post(String url, byte[] formBody, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+		String argument = eventArgument(new String(formBody, UTF_8));
+		if (argument.equals("registraties")){
+			return response(url, calendarPage(new LocalDate()));
+		} else if (argument.startsWith(NAVIGATION_PREFIX)){
+			return response(url, calendarPage(fromCode(argument.substring(NAVIGATION_PREFIX.length()))));
+		}
+		LocalDate date = fromCode(argument);
+		Long delayMillis;
+		synchronized (dayPageRequests) {
+			dayPageRequests.add(date);
+			Integer remainingFailures = failures.remove(date);
+			if (remainingFailures != null){
+				if (remainingFailures > 1){
+					failures.put(date, remainingFailures - 1);
+				}
+				throw new IOException("Day page of " + date + " failed");
+			}
+			delayMillis = delays.remove(date);
+		}
+		if (delayMillis != null){
+			pause(delayMillis);
+		}
+		return response(url, dayPage());
+	}
+	
+	void failDayPage(LocalDate date, int times) {
+		synchronized (dayPageRequests) {
+			failures.put(date, times);
+		}
+	}
+	
+	void delayDayPage(LocalDate date, long millis) {
+		synchronized (dayPageRequests) {
+			delays.put(date, millis);
+		}
+	}
+	
+	List<LocalDate> getDayPageRequests() {
+		synchronized (dayPageRequests) {
+			return new ArrayList<LocalDate>(dayPageRequests);
+		}
+	}
+	
+	void clearDayPageRequests() {
+		synchronized (dayPageRequests) {
+			dayPageRequests.clear();
+		}
+	}
+	
+	private void pause(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while answering late");
+		}
+	}
+	
+	private String calendarPage(LocalDate month) {
+		LocalDate firstDay = month.withDayOfMonth(1);
+		StringBuilder calendar = new StringBuilder();
+		calendar.append(postBackLink(NAVIGATION_PREFIX + code(firstDay.minusMonths(1)), "&lt;"));
+		calendar.append(postBackLink(NAVIGATION_PREFIX + code(firstDay.plusMonths(1)), "&gt;"));
+		for (LocalDate day = firstDay.minusDays(firstDay.getDayOfWeek() - 1); day.isBefore(firstDay.plusMonths(1)); day = day.plusDays(1)) {
+			calendar.append(postBackLink(code(day), String.valueOf(day.getDayOfMonth())));
+		}
+		return page(calendar.toString());
+	}
+	
+	private String dayPage() {
+		return page("<span id=\"registraties_dgrPlanningen__ctl2_lblCode\">L</span>"
+				+ "<span id=\"registraties_dgrRegistraties__ctl2_lblRegistratieTijd\">08:00</span>"
+				+ "<span id=\"registraties_dgrRegistraties__ctl3_lblRegistratieTijd\">16:30</span>"
+				+ "<span id=\"registraties_lblTotaalGepresteerd\">8u0</span>");
+	}
+	
+	private String page(String content) {
+		return "<html><body><form id=\"Form1\">"
+				+ "<input type=\"hidden\" name=\"__VIEWSTATE\" id=\"__VIEWSTATE\" value=\"state\" />"
+				+ "<input type=\"hidden\" name=\"__EVENTVALIDATION\" id=\"__EVENTVALIDATION\" value=\"validation\" />"
+				+ content + "</form></body></html>";
+	}
+	
+	private String postBackLink(String argument, String text) {
+		return "<a href=\"javascript:__doPostBack('" + CALENDAR_TARGET + "','" + argument + "')\">" + text + "</a>";
+	}
+	
+	private TransportResponse response(String url, String page) throws IOException {
+		return new TransportResponse(new URL(url), 200, UTF_8, new ByteArrayInputStream(page.getBytes(UTF_8)), System.nanoTime(), null);
+	}
+	
+	private static String code(LocalDate date) {
+		return String.valueOf(Days.daysBetween(DAY_ZERO, date).getDays());
+	}
+	
+	private static LocalDate fromCode(String code) {
+		return DAY_ZERO.plusDays(Integer.parseInt(code));
+	}
+	
+	private static String eventArgument(String formBody) throws UnsupportedEncodingException {
+		for (String field : formBody.split("&")) {
+			int separator = field.indexOf('=');
+			if (separator > 0 && EVENTARGUMENT.equals(URLDecoder.decode(field.substring(0, separator), UTF_8))){
+				return URLDecoder.decode(field.substring(separator + 1), UTF_8);
+			}
+		}
+		return "";
+	}
+
+}
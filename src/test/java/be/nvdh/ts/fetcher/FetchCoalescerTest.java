@@ -0,0 +1,147 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import be.nvdh.ts.domain.FetchResult;
+import be.nvdh.ts.domain.Prestation;
+import be.nvdh.ts.exception.FetchException;
+
+public class FetchCoalescerTest {
+	
+	@Test
+	public void concurrentCallersShareOneFetch() throws Exception {
+		final FetchCoalescer coalescer = new FetchCoalescer(0);
+		final CountDownLatch fetchStarted = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger fetches = new AtomicInteger();
+		final FetchResult result = result();
+		final Callable<FetchResult> fetch = new Callable<FetchResult>() {
+			public FetchResult call() throws InterruptedException {
+				fetches.incrementAndGet();
+				fetchStarted.countDown();
+				release.await();
+				return result;
+			}
+		};
+		final AtomicReference<FetchResult> firstResult = new AtomicReference<FetchResult>();
+		final AtomicReference<FetchResult> secondResult = new AtomicReference<FetchResult>();
+		Thread first = fetchIn(coalescer, fetch, firstResult);
+		first.start();
+		fetchStarted.await();
+		Thread second = fetchIn(coalescer, fetch, secondResult);
+		second.start();
+		while (second.getState() != Thread.State.WAITING) {
+			Thread.yield();
+		}
+		release.countDown();
+		first.join();
+		second.join();
+		
+		assertEquals(1, fetches.get());
+		assertSame(result, firstResult.get());
+		assertSame(result, secondResult.get());
+		
+		coalescer.fetch("march", fetch);
+		assertEquals(2, fetches.get());
+	}
+	
+	@Test
+	public void resultIsReusedWithinTheReuseTime() throws FetchException {
+		FetchCoalescer coalescer = new FetchCoalescer(60000);
+		CountingFetch fetch = new CountingFetch();
+		FetchResult result = coalescer.fetch("march", fetch);
+		assertSame(result, coalescer.fetch("march", fetch));
+		coalescer.fetch("april", fetch);
+		assertEquals(2, fetch.count.get());
+	}
+	
+	@Test
+	public void failuresAreNotReused() throws FetchException {
+		FetchCoalescer coalescer = new FetchCoalescer(60000);
+		final AtomicInteger attempts = new AtomicInteger();
+		Callable<FetchResult> failingFetch = new Callable<FetchResult>() {
+			public FetchResult call() throws IOException {
+				attempts.incrementAndGet();
+				throw new IOException("eline is down");
+			}
+		};
+		for (int i = 0; i < 2; i++) {
+			try {
+				coalescer.fetch("march", failingFetch);
+				fail("the failure should have been passed on");
+			} catch (FetchException e) {
+				assertEquals(IOException.class, e.getCause().getClass());
+			}
+		}
+		assertEquals(2, attempts.get());
+	}
+	
+	@Test
+	public void fetcherReusesTheResultOfTheSameDayOnly() throws FetchException {
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("url", "http://eline.test/default.aspx");
+		config.put("minutesPerDay", "480");
+		config.put("minutesLunch", "30");
+		config.put("metrics", "none");
+		config.put("coalesceMillis", "60000");
+		FakeElineTransport transport = new FakeElineTransport();
+		ElineFetcher fetcher = new ElineFetcher();
+		fetcher.init(config);
+		fetcher.setTransport(transport);
+		LocalDate month = new LocalDate().minusMonths(2).withDayOfMonth(1);
+		try {
+			FetchResult result = fetcher.fetch(month.plusDays(9).toDate());
+			int dayPagesPerFetch = transport.getDayPageRequests().size();
+			assertSame(result, fetcher.fetch(month.plusDays(9).toDate()));
+			assertEquals(dayPagesPerFetch, transport.getDayPageRequests().size());
+			
+			fetcher.fetch(month.plusDays(19).toDate());
+			assertEquals(2 * dayPagesPerFetch, transport.getDayPageRequests().size());
+		} finally {
+			fetcher.close();
+		}
+	}
+	
+	private Thread fetchIn(final FetchCoalescer coalescer, final Callable<FetchResult> fetch, final AtomicReference<FetchResult> result) {
+		return new Thread(new Runnable() {
+			public void run() {
+				try {
+					result.set(coalescer.fetch("march", fetch));
+				} catch (FetchException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+	}
+	
+	private static FetchResult result() {
+		return new FetchResult(new LocalDate(), new LocalDate(), new ArrayList<Prestation>(), Duration.ZERO, Duration.ZERO, null);
+	}
+	
+	private static class CountingFetch implements Callable<FetchResult> {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		public FetchResult call() {
+			count.incrementAndGet();
+			return result();
+		}
+		
+	}
+
+}
@@ -0,0 +1,160 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.nvdh.ts.domain.Prestation;
+
+public class HistoryStoreTest {
+	
+	private static final LocalDate MONDAY = new LocalDate(2020, 3, 2);
+	private static final List<LocalTime> TICKS = Arrays.asList(new LocalTime(8, 0), new LocalTime(16, 30));
+	
+	private File directory;
+	private File file;
+	
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("history").toFile();
+		file = new File(directory, "account.history");
+	}
+	
+	@After
+	public void deleteDirectory() {
+		TestFiles.delete(directory);
+	}
+	
+	@Test
+	public void storedDaysAreRebuiltAfterReopening() throws IOException {
+		HistoryStore history = new HistoryStore(file);
+		append(history, MONDAY, TICKS, Arrays.asList(new LocalTime(12, 0)), "L", "", 8 * 60 + 30);
+		append(history, MONDAY.plusDays(1), TICKS, new ArrayList<LocalTime>(), "FEE", "", 0);
+		history.close();
+		
+		history = new HistoryStore(file);
+		try {
+			assertEquals(2, history.size());
+			assertTrue(history.containsAll(Arrays.asList(MONDAY, MONDAY.plusDays(1))));
+			Prestation monday = history.get(MONDAY);
+			assertEquals(MONDAY, monday.getDay());
+			assertEquals(Duration.standardMinutes(8 * 60 + 30), monday.getDuration());
+			assertEquals(Duration.standardMinutes(30), monday.getOvertime());
+			assertEquals(TICKS, monday.getTickTimes());
+			assertEquals(Arrays.asList(new LocalTime(12, 0)), monday.getManualRegistrations());
+			assertNull(history.get(MONDAY.plusDays(2)));
+			
+			PrestationTotals totals = history.totals(MONDAY, MONDAY.plusDays(6));
+			assertEquals(Duration.standardMinutes(8 * 60 + 30), totals.getTime());
+		} finally {
+			history.close();
+		}
+	}
+	
+	@Test
+	public void laterRecordOfADayHidesTheEarlierOne() throws IOException {
+		HistoryStore history = new HistoryStore(file);
+		try {
+			append(history, MONDAY, TICKS, new ArrayList<LocalTime>(), "L", "", 8 * 60);
+			append(history, MONDAY, TICKS, new ArrayList<LocalTime>(), "L", "", 9 * 60);
+			assertEquals(Duration.standardHours(9), history.get(MONDAY).getDuration());
+		} finally {
+			history.close();
+		}
+	}
+	
+	@Test
+	public void unknownDayCodesAndIrregularitiesSurviveReopening() throws IOException {
+		HistoryStore history = new HistoryStore(file);
+		append(history, MONDAY, TICKS, new ArrayList<LocalTime>(), "ZZ", "", 8 * 60);
+		append(history, MONDAY.plusDays(1), TICKS, new ArrayList<LocalTime>(), "L", "Badge\tvergeten", 8 * 60);
+		append(history, MONDAY.plusDays(2), TICKS, new ArrayList<LocalTime>(), "fee", "", 0);
+		history.close();
+		
+		history = new HistoryStore(file);
+		try {
+			assertTrue(history.containsAll(Arrays.asList(MONDAY, MONDAY.plusDays(1), MONDAY.plusDays(2))));
+			assertEquals(Duration.standardHours(8), history.get(MONDAY.plusDays(1)).getDuration());
+		} finally {
+			history.close();
+		}
+	}
+	
+	@Test
+	public void daysWhoseTextIsLostAreNotRebuilt() throws IOException {
+		HistoryStore history = new HistoryStore(file);
+		append(history, MONDAY, TICKS, new ArrayList<LocalTime>(), "ZZ", "", 8 * 60);
+		append(history, MONDAY.plusDays(1), TICKS, new ArrayList<LocalTime>(), "L", "Badge vergeten", 8 * 60);
+		append(history, MONDAY.plusDays(2), TICKS, new ArrayList<LocalTime>(), "L", "", 8 * 60);
+		history.close();
+		for (File text : directory.listFiles()) {
+			if (!text.equals(file)){
+				assertTrue(text.delete());
+			}
+		}
+		
+		history = new HistoryStore(file);
+		try {
+			assertFalse(history.containsAll(Arrays.asList(MONDAY)));
+			assertFalse(history.containsAll(Arrays.asList(MONDAY.plusDays(1))));
+			assertTrue(history.containsAll(Arrays.asList(MONDAY.plusDays(2))));
+		} finally {
+			history.close();
+		}
+	}
+	
+	@Test
+	public void daysWithMoreRegistrationsThanFitAreNotRebuilt() throws IOException {
+		List<LocalTime> ticks = new ArrayList<LocalTime>();
+		for (int minute = 0; minute < HistoryStore.MAX_TICKS + 2; minute++) {
+			ticks.add(new LocalTime(7, minute));
+		}
+		HistoryStore history = new HistoryStore(file);
+		try {
+			append(history, MONDAY, ticks, new ArrayList<LocalTime>(), "L", "", 8 * 60);
+			assertTrue(history.contains(MONDAY));
+			assertFalse(history.containsAll(Arrays.asList(MONDAY)));
+			assertEquals(Duration.standardHours(8), history.totals(MONDAY, MONDAY).getTime());
+		} finally {
+			history.close();
+		}
+	}
+	
+	@Test
+	public void fileIsLockedWhileTheStoreIsOpen() throws IOException {
+		HistoryStore history = new HistoryStore(file);
+		try {
+			new HistoryStore(file).close();
+			fail("a second store opened the same file");
+		} catch (IOException e) {
+			// expected
+		} finally {
+			history.close();
+		}
+		new HistoryStore(file).close();
+	}
+	
+	private void append(HistoryStore history, LocalDate date, List<LocalTime> ticks, List<LocalTime> manual, String rawDayCode, String irregularities, int minutes) throws IOException {
+		Duration total = Duration.standardMinutes(minutes);
+		Duration overtime = Duration.standardMinutes(minutes - 8 * 60);
+		DayRegistration day = new DayRegistration(date, ticks, manual, rawDayCode, irregularities, total);
+		history.append(day, new Prestation(date, total, total.minus(overtime), overtime, null, ticks, manual, rawDayCode, irregularities, ""));
+	}
+
+}
@@ -0,0 +1,90 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.Test;
+
+import be.nvdh.ts.domain.Prestation;
+
+public class PrestationAggregatorTest {
+	
+	@Test
+	public void weeksAcrossTheTurnOfTheYearAreKeyedByWeekyear() {
+		List<Prestation> prestations = Arrays.asList(
+				prestation(new LocalDate(2019, 12, 27), 480, 30),
+				prestation(new LocalDate(2019, 12, 30), 450, 0),
+				prestation(new LocalDate(2019, 12, 31), 500, 20),
+				prestation(new LocalDate(2020, 1, 2), 420, -60),
+				prestation(new LocalDate(2020, 1, 6), 480, 0));
+		PrestationAggregation aggregation = PrestationAggregator.aggregate(prestations);
+		
+		assertEquals(3, aggregation.getWeeks().size());
+		assertEquals(Duration.standardMinutes(-40), aggregation.getWeek(new LocalDate(2020, 1, 1)).getOvertime());
+		assertEquals(3, aggregation.getWeek(new LocalDate(2019, 12, 30)).getDays());
+		assertEquals(2, aggregation.getMonths().size());
+		assertEquals(Duration.standardMinutes(1430), aggregation.getMonth(new LocalDate(2019, 12, 1)).getTime());
+		assertEquals(Duration.standardMinutes(-10), aggregation.getTotal().getOvertime());
+		assertEquals(Duration.standardMinutes(50).getMillis(), aggregation.getRunningOvertimeMillis(2));
+	}
+	
+	@Test
+	public void matchesTotalsGroupedDayByDay() {
+		Random random = new Random(20200302);
+		for (int run = 0; run < 200; run++) {
+			List<Prestation> prestations = new ArrayList<Prestation>();
+			LocalDate day = new LocalDate(2019, 1, 1).plusDays(random.nextInt(730));
+			int numberOfDays = random.nextInt(90);
+			for (int i = 0; i < numberOfDays; i++) {
+				day = day.plusDays(1 + random.nextInt(3));
+				prestations.add(prestation(day, random.nextInt(600), random.nextInt(240) - 120));
+			}
+			Collections.shuffle(prestations, random);
+			assertSameTotals(prestations, PrestationAggregator.aggregate(prestations));
+		}
+	}
+	
+	private void assertSameTotals(List<Prestation> prestations, PrestationAggregation aggregation) {
+		Map<Integer, Long> weekOvertime = new HashMap<Integer, Long>();
+		Map<Integer, Long> monthTime = new HashMap<Integer, Long>();
+		long totalTime = 0;
+		for (Prestation prestation : prestations) {
+			int weekKey = PrestationAggregation.weekKey(prestation.getDay());
+			int monthKey = PrestationAggregation.monthKey(prestation.getDay());
+			weekOvertime.put(weekKey, sum(weekOvertime.get(weekKey), prestation.getOvertime().getMillis()));
+			monthTime.put(monthKey, sum(monthTime.get(monthKey), prestation.getDuration().getMillis()));
+			totalTime += prestation.getDuration().getMillis();
+		}
+		assertEquals(weekOvertime.size(), aggregation.getWeeks().size());
+		for (Map.Entry<Integer, Long> week : weekOvertime.entrySet()) {
+			assertEquals(week.getValue().longValue(), aggregation.getWeeks().get(week.getKey()).getOvertimeMillis());
+		}
+		assertEquals(monthTime.size(), aggregation.getMonths().size());
+		for (Map.Entry<Integer, Long> month : monthTime.entrySet()) {
+			assertEquals(month.getValue().longValue(), aggregation.getMonths().get(month.getKey()).getTimeMillis());
+		}
+		assertEquals(totalTime, aggregation.getTotal().getTimeMillis());
+		assertEquals(prestations.size(), aggregation.getTotal().getDays());
+	}
+	
+	private long sum(Long total, long millis) {
+		return total == null ? millis : total + millis;
+	}
+	
+	private Prestation prestation(LocalDate day, int minutes, int overtimeMinutes) {
+		Duration time = Duration.standardMinutes(minutes);
+		Duration overtime = Duration.standardMinutes(overtimeMinutes);
+		return new Prestation(day, time, time.minus(overtime), overtime, null, new ArrayList<LocalTime>(), new ArrayList<LocalTime>(), "L", "", "");
+	}
+
+}
@@ -0,0 +1,87 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.Test;
+
+import be.nvdh.ts.domain.Prestation;
+import be.nvdh.ts.exception.FetchException;
+
+public class PrestationStreamTest {
+	
+	private static final LocalDate THURSDAY = new LocalDate(2020, 3, 26);
+	
+	private final List<String> events = new ArrayList<String>();
+	
+	private final PrestationListener listener = new PrestationListener() {
+		
+		public void prestationFetched(Prestation prestation) {
+			events.add("day " + prestation.getDay());
+		}
+		
+		public void weekCompleted(Prestation lastPrestationOfWeek, PrestationTotals week) {
+			events.add("week " + lastPrestationOfWeek.getDay() + " " + week.getDays());
+		}
+		
+		public void monthCompleted(LocalDate month, PrestationTotals totals) {
+			events.add("month " + month + " " + totals.getDays());
+		}
+		
+		public void fetchCompleted(PrestationTotals total, LocalTime timeToGoHome, List<LocalDate> missingDays) {
+			events.add("total " + total.getDays() + " " + total.getTime().getStandardHours() + "h");
+		}
+		
+		public void fetchFailed(FetchException exception) {
+			events.add("failed");
+		}
+		
+	};
+	
+	@Test
+	public void daysOfferedInAnyOrderArePassedOnInDateOrder() {
+		PrestationStream stream = new PrestationStream(THURSDAY, 8, listener);
+		stream.offer(prestation(THURSDAY.plusDays(7)));
+		stream.offer(prestation(THURSDAY.plusDays(1)));
+		assertTrue(events.isEmpty());
+		
+		stream.offer(prestation(THURSDAY));
+		assertEquals(Arrays.asList("day 2020-03-26", "day 2020-03-27"), events);
+		
+		stream.offer(prestation(THURSDAY.plusDays(6)));
+		stream.offer(prestation(THURSDAY.plusDays(5)));
+		stream.skip(THURSDAY.plusDays(3));
+		stream.offer(prestation(THURSDAY.plusDays(4)));
+		assertEquals(2, events.size());
+		stream.skip(THURSDAY.plusDays(2));
+		stream.complete(null, new ArrayList<LocalDate>());
+		
+		assertEquals(Arrays.asList(
+				"day 2020-03-26", "day 2020-03-27", "week 2020-03-27 2",
+				"day 2020-03-30", "day 2020-03-31", "month 2020-03-01 4",
+				"day 2020-04-01", "day 2020-04-02", "week 2020-04-02 4", "month 2020-04-01 2",
+				"total 6 48h"), events);
+	}
+	
+	@Test
+	public void streamWithoutDaysOnlyCompletes() {
+		PrestationStream stream = new PrestationStream(THURSDAY, 2, listener);
+		stream.skip(THURSDAY.plusDays(1));
+		stream.skip(THURSDAY);
+		stream.complete(null, Arrays.asList(THURSDAY));
+		assertEquals(Arrays.asList("total 0 0h"), events);
+	}
+	
+	private Prestation prestation(LocalDate date) {
+		List<LocalTime> ticks = Arrays.asList(new LocalTime(8, 0), new LocalTime(16, 30));
+		return new Prestation(date, Duration.standardHours(8), Duration.standardHours(8), Duration.ZERO, null, ticks, new ArrayList<LocalTime>(), "L", "", "");
+	}
+
+}
@@ -0,0 +1,99 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+	
+	private static final long ADJUSTMENT_INTERVAL_MILLIS = 1000;
+	
+	private final VirtualTicker ticker = new VirtualTicker();
+	
+	@Test
+	public void permitsAreHandedOutAtTheRate() throws InterruptedIOException {
+		RateLimiter rateLimiter = new RateLimiter(20, 1000, ticker);
+		for (int i = 0; i < 11; i++) {
+			rateLimiter.acquire();
+		}
+		assertEquals(500, ticker.elapsedMillis(), 1);
+	}
+	
+	@Test
+	public void burstIsLimitedToOneSecondOfPermits() throws InterruptedIOException {
+		RateLimiter rateLimiter = new RateLimiter(20, 1000, ticker);
+		ticker.advance(10000);
+		for (int i = 0; i < 20; i++) {
+			rateLimiter.acquire();
+		}
+		assertEquals(10000, ticker.elapsedMillis(), 1);
+		
+		rateLimiter.acquire();
+		assertEquals(10050, ticker.elapsedMillis(), 1);
+	}
+	
+	@Test
+	public void failuresHalveTheRateDownToASixteenth() {
+		RateLimiter rateLimiter = new RateLimiter(32, 1000, ticker);
+		for (int adjustment = 0; adjustment < 5; adjustment++) {
+			ticker.advance(ADJUSTMENT_INTERVAL_MILLIS);
+			rateLimiter.completed(TimeUnit.MILLISECONDS.toNanos(10), true);
+		}
+		assertEquals(2, rateLimiter.getRate(), 0.001);
+	}
+	
+	@Test
+	public void rateIsOnlyAdjustedOncePerInterval() {
+		RateLimiter rateLimiter = new RateLimiter(32, 1000, ticker);
+		ticker.advance(ADJUSTMENT_INTERVAL_MILLIS);
+		rateLimiter.completed(TimeUnit.MILLISECONDS.toNanos(10), true);
+		ticker.advance(ADJUSTMENT_INTERVAL_MILLIS - 1);
+		rateLimiter.completed(TimeUnit.MILLISECONDS.toNanos(10), true);
+		assertEquals(16, rateLimiter.getRate(), 0.001);
+	}
+	
+	@Test
+	public void slowResponsesHalveTheRateAndFastOnesRestoreIt() {
+		RateLimiter rateLimiter = new RateLimiter(10, 100, ticker);
+		ticker.advance(ADJUSTMENT_INTERVAL_MILLIS);
+		rateLimiter.completed(TimeUnit.MILLISECONDS.toNanos(500), false);
+		assertEquals(5, rateLimiter.getRate(), 0.001);
+		assertEquals(500, rateLimiter.getAverageLatencyMillis());
+		
+		for (int i = 0; i < 20; i++) {
+			rateLimiter.completed(TimeUnit.MILLISECONDS.toNanos(10), false);
+		}
+		ticker.advance(ADJUSTMENT_INTERVAL_MILLIS);
+		rateLimiter.completed(TimeUnit.MILLISECONDS.toNanos(10), false);
+		assertEquals(6, rateLimiter.getRate(), 0.001);
+	}
+	
+	/**
+	 * A clock that only moves when it is advanced or slept on.
+	 */
+	private static class VirtualTicker implements RateLimiter.Ticker {
+		
+		private long nanos;
+		
+		public long nanoTime() {
+			return nanos;
+		}
+		
+		public void sleep(long sleepNanos) {
+			nanos += sleepNanos;
+		}
+		
+		void advance(long millis) {
+			nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+		
+		long elapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(nanos);
+		}
+		
+	}
+
+}
@@ -0,0 +1,95 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.Duration;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.nvdh.ts.domain.Prestation;
+import be.nvdh.ts.exception.FetchException;
+
+public class ResponseArchiveTest {
+	
+	private static final LocalDate MONTH = new LocalDate().minusMonths(3).withDayOfMonth(1);
+	
+	private File directory;
+	
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("archive").toFile();
+	}
+	
+	@After
+	public void deleteDirectory() {
+		TestFiles.delete(directory);
+	}
+	
+	@Test
+	public void recordedDaysAreReplayedWithoutRequests() throws Exception {
+		ElineFetcher recorder = fetcher("record", new FakeElineTransport());
+		try {
+			recorder.fetchRange(MONTH, MONTH.plusDays(13));
+		} finally {
+			recorder.close();
+		}
+		assertTrue(new File(new File(directory, recorder.getDefaultAccount().getFileName()), monthFile(MONTH)).exists());
+		
+		FakeElineTransport transport = new FakeElineTransport();
+		ElineFetcher replayer = fetcher("replay", transport);
+		try {
+			replayer.fetchRange(MONTH, MONTH.plusDays(13));
+			Prestation prestation = replayer.toPrestation(replayer.fetchDayRegistration(replayer.getDefaultAccount(), MONTH.plusDays(6), FetchContext.unbounded()));
+			assertEquals(MONTH.plusDays(6), prestation.getDay());
+			assertEquals(Arrays.asList(new LocalTime(8, 0), new LocalTime(16, 30)), prestation.getTickTimes());
+			assertEquals(Duration.standardHours(8), prestation.getDuration());
+			assertEquals(0, transport.getDayPageRequests().size());
+		} finally {
+			replayer.close();
+		}
+	}
+	
+	@Test
+	public void rangeThatWasNeverRecordedFailsToReplay() throws Exception {
+		ElineFetcher replayer = fetcher("replay", new FakeElineTransport());
+		try {
+			replayer.fetchRange(MONTH, MONTH.plusDays(6));
+			fail("nothing was recorded");
+		} catch (FetchException e) {
+			assertEquals(IOException.class, e.getCause().getClass());
+		} finally {
+			replayer.close();
+		}
+	}
+	
+	private ElineFetcher fetcher(String archiveMode, FakeElineTransport transport) {
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("url", "http://eline.test/default.aspx");
+		config.put("minutesPerDay", "480");
+		config.put("minutesLunch", "30");
+		config.put("metrics", "none");
+		config.put("archiveDir", directory.getPath());
+		config.put("archiveMode", archiveMode);
+		ElineFetcher fetcher = new ElineFetcher();
+		fetcher.init(config);
+		fetcher.setTransport(transport);
+		return fetcher;
+	}
+	
+	private String monthFile(LocalDate month) {
+		return String.format("%04d-%02d.days.gz", month.getYear(), month.getMonthOfYear());
+	}
+
+}
@@ -0,0 +1,69 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.LocalDate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TeamReportTest {
+	
+	private static final String URL = "http://eline.test/default.aspx";
+	
+	private File directory;
+	private FakeElineTransport transport = new FakeElineTransport();
+	private ElineFetcher fetcher = new ElineFetcher();
+	
+	@Before
+	public void createFetcher() throws IOException {
+		directory = Files.createTempDirectory("team").toFile();
+		Map<String, String> config = new HashMap<String, String>();
+		config.put("url", URL);
+		config.put("minutesPerDay", "480");
+		config.put("minutesLunch", "30");
+		config.put("metrics", "none");
+		config.put("concurrency", "2");
+		config.put("historyDir", directory.getPath());
+		fetcher.init(config);
+		fetcher.setTransport(transport);
+	}
+	
+	@After
+	public void closeFetcher() {
+		fetcher.close();
+		TestFiles.delete(directory);
+	}
+	
+	@Test
+	public void closedRangesAreReportedFromTheHistoryWithoutRequests() throws Exception {
+		List<Account> accounts = Arrays.asList(new Account("an", URL), new Account("bart", URL));
+		LocalDate monday = new LocalDate().minusWeeks(3).withDayOfWeek(1);
+		LocalDate sunday = monday.plusDays(13);
+		
+		TeamReport fetched = fetcher.teamReport(accounts, monday, sunday);
+		assertTrue(transport.getDayPageRequests().size() >= 2 * 14);
+		
+		transport.clearDayPageRequests();
+		TeamReport fromHistory = fetcher.teamReport(accounts, monday, sunday);
+		assertEquals(0, transport.getDayPageRequests().size());
+		
+		assertEquals(Arrays.asList("an", "bart"), fromHistory.getPersons());
+		for (String person : fromHistory.getPersons()) {
+			assertEquals(14, fromHistory.getPerson(person).getDays());
+			assertEquals(fetched.getPerson(person).getTime(), fromHistory.getPerson(person).getTime());
+			assertEquals(fetched.getPerson(person).getOvertime(), fromHistory.getPerson(person).getOvertime());
+		}
+		assertEquals(fromHistory.getPerson("an").getTime().plus(fromHistory.getPerson("bart").getTime()), fromHistory.getTeam().getTime());
+	}
+
+}
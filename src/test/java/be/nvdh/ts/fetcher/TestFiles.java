@@ -0,0 +1,17 @@
+package be.nvdh.ts.fetcher;
+
+import java.io.File;
+
+class TestFiles {
+	
+	static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null){
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
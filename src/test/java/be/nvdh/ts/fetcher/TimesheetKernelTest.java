@@ -0,0 +1,183 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.time.Duration;
+import org.joda.time.Interval;
+import org.joda.time.LocalTime;
+import org.junit.Test;
+
+/**
+ * Compares the kernel with the Joda calculation it replaced, which is kept here as the reference.
+ */
+public class TimesheetKernelTest {
+	
+	private static final int MINUTES_LUNCH = 30;
+	private static final LocalTime START_LUNCH = new LocalTime(12, 0);
+	private static final LocalTime END_LUNCH = new LocalTime(14, 0);
+	
+	private final TimesheetKernel kernel = new TimesheetKernel(MINUTES_LUNCH, TimesheetKernel.minuteOfDay(START_LUNCH), TimesheetKernel.minuteOfDay(END_LUNCH));
+	
+	@Test
+	public void matchesTheJodaCalculationOnKnownDays() {
+		// registered minutes, clock ticks, manual registrations
+		Object[][] days = {
+			{ 480, times(), times() },
+			{ 480, times("08:00", "16:30"), times() },
+			{ 0, times("08:00", "16:30"), times() },
+			{ 0, times("08:00", "12:10", "12:35", "16:30"), times() },
+			{ 0, times("08:00", "12:10", "13:30", "16:30"), times() },
+			{ 0, times("08:00", "11:50", "12:05", "16:30"), times() },
+			{ 0, times("08:00", "13:50", "14:15", "16:30"), times() },
+			{ 0, times("12:30", "13:00"), times() },
+			{ 0, times("08:00"), times() },
+			{ 300, times("08:00", "12:00", "13:00"), times() },
+			{ 0, times("08:00", "16:30"), times("12:00", "12:45") },
+			{ 0, times("16:30", "08:00"), times("12:45", "12:00") },
+			{ 0, times("08:00", "12:00"), times("12:00", "16:00") },
+			{ 0, times("08:00", "16:30"), times("08:00", "16:30") },
+			{ 0, times("08:00"), times("16:30") },
+			{ 0, times("08:00", "12:15"), times("12:45") },
+			{ 0, times("22:00", "23:59"), times("00:00", "02:30") },
+			{ 0, times("00:30", "22:00"), times() },
+			{ 0, times("23:30"), times("00:15") },
+			{ 600, times("00:00", "23:59"), times() },
+			{ 0, times("12:00", "14:00"), times() },
+			{ 0, times("12:01", "13:59"), times() },
+		};
+		for (Object[] day : days) {
+			assertSameTotal((Integer) day[0], list(day[1]), list(day[2]));
+		}
+	}
+	
+	@Test
+	public void matchesTheJodaCalculationOnRandomDays() {
+		Random random = new Random(20200302);
+		for (int i = 0; i < 20000; i++) {
+			int registeredMinutes = random.nextInt(4) == 0 ? random.nextInt(720) : 0;
+			assertSameTotal(registeredMinutes, randomTimes(random), randomTimes(random));
+		}
+	}
+	
+	private void assertSameTotal(int registeredMinutes, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
+		Duration expected = legacyTotal(Duration.standardMinutes(registeredMinutes), tickTimes, manualRegistrations);
+		int total = kernel.totalWithManualRegistrations(registeredMinutes, tickTimes, manualRegistrations);
+		assertEquals(tickTimes + " " + manualRegistrations, expected, Duration.standardMinutes(total));
+	}
+	
+	/**
+	 * Ticks cluster around the usual office hours, but any minute of the day can show up, duplicates included.
+	 */
+	private List<LocalTime> randomTimes(Random random) {
+		List<LocalTime> times = new ArrayList<LocalTime>();
+		int count = random.nextInt(7);
+		for (int i = 0; i < count; i++) {
+			int minuteOfDay;
+			if (random.nextInt(5) == 0){
+				minuteOfDay = random.nextInt(24 * 60);
+			} else {
+				minuteOfDay = 7 * 60 + random.nextInt(11 * 60);
+			}
+			if (random.nextInt(10) == 0 && !times.isEmpty()){
+				times.add(times.get(random.nextInt(times.size())));
+			} else {
+				times.add(new LocalTime(minuteOfDay / 60, minuteOfDay % 60));
+			}
+		}
+		return times;
+	}
+	
+	private static List<LocalTime> times(String... values) {
+		List<LocalTime> times = new ArrayList<LocalTime>();
+		for (String value : values) {
+			times.add(LocalTime.parse(value));
+		}
+		return times;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<LocalTime> list(Object times) {
+		return (List<LocalTime>) times;
+	}
+	
+	private Duration legacyTotal(Duration totalDuration, List<LocalTime> tickTimes, List<LocalTime> manualRegistrations) {
+		List<LocalTime> allRegistrations = new ArrayList<LocalTime>();
+		allRegistrations.addAll(tickTimes);
+		allRegistrations.addAll(manualRegistrations);
+		Collections.sort(allRegistrations);
+		allRegistrations = removeDuplicates(allRegistrations);
+		
+		if (allRegistrations.size() % 2 == 0){
+			Duration totalCalculatedTime = durationOverIntervals(allRegistrations);
+			if (!timeOutDuringLunchHours(allRegistrations).isLongerThan(middayBreak())){
+				totalCalculatedTime = totalCalculatedTime.minus(middayBreak());
+			}
+			if (totalDuration.isLongerThan(totalCalculatedTime)){
+				return totalDuration;
+			}
+			return totalCalculatedTime;
+		}
+		return totalDuration;
+	}
+	
+	private List<LocalTime> removeDuplicates(List<LocalTime> allRegistrations) {
+		List<LocalTime> filteredList = new ArrayList<LocalTime>();
+		for (LocalTime localTime : allRegistrations) {
+			if (!filteredList.contains(localTime)){
+				filteredList.add(localTime);
+			}
+		}
+		return filteredList;
+	}
+	
+	private Duration durationOverIntervals(List<LocalTime> allRegistrations) {
+		Duration totalDuration = Duration.ZERO;
+		for (int i = 1; i < allRegistrations.size(); i += 2) {
+			totalDuration = totalDuration.plus(durationBetween(allRegistrations.get(i - 1), allRegistrations.get(i)));
+		}
+		return totalDuration;
+	}
+	
+	private Duration timeOutDuringLunchHours(List<LocalTime> allRegistrations) {
+		boolean started = false;
+		boolean lunchTime = false;
+		LocalTime startTime = null;
+		for (LocalTime localTime : allRegistrations) {
+			if (!started){
+				startTime = localTime;
+				if (isInLunchHours(localTime)){
+					lunchTime = true;
+				}
+				started = true;
+			} else {
+				if (lunchTime && isInLunchHours(localTime)){
+					return durationBetween(startTime, localTime);
+				} else if (!lunchTime && isInLunchHours(localTime)){
+					return durationBetween(START_LUNCH, localTime);
+				} else if (lunchTime && !isInLunchHours(localTime)){
+					return durationBetween(startTime, END_LUNCH);
+				}
+				started = false;
+			}
+		}
+		return Duration.ZERO;
+	}
+	
+	private boolean isInLunchHours(LocalTime localTime) {
+		return localTime.isAfter(START_LUNCH) && localTime.isBefore(END_LUNCH);
+	}
+	
+	private Duration middayBreak() {
+		return Duration.standardMinutes(MINUTES_LUNCH);
+	}
+	
+	private Duration durationBetween(LocalTime start, LocalTime end) {
+		return new Interval(start.getMillisOfDay(), end.getMillisOfDay()).toDuration();
+	}
+
+}
@@ -0,0 +1,96 @@
+package be.nvdh.ts.fetcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class TransportResponseTest {
+	
+	private static final String UTF_8 = "UTF-8";
+	private static final String URL = "http://eline.test/default.aspx";
+	
+	@Test
+	public void gzippedBodyIsCountedAsItCameOverTheWire() throws IOException {
+		String page = page();
+		byte[] compressed = gzip(page);
+		TransportResponse response = TransportResponse.gzipped(new URL(URL), 200, UTF_8, new ByteArrayInputStream(compressed), System.nanoTime(), null);
+		try {
+			assertEquals(page, read(response.getBody()));
+			assertEquals(compressed.length, response.getBytesReceived());
+		} finally {
+			response.close();
+		}
+	}
+	
+	@Test
+	public void throttledResponseKeepsCountingTheWireBytes() throws IOException {
+		String page = page();
+		final byte[] compressed = gzip(page);
+		HttpTransport transport = new HttpTransport() {
+			public TransportResponse get(String url, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+				return TransportResponse.gzipped(new URL(url), 200, UTF_8, new ByteArrayInputStream(compressed), System.nanoTime(), null);
+			}
+			
+			public TransportResponse post(String url, byte[] formBody, CookieJar cookies, int timeoutMillis, FetchContext context) throws IOException {
+				return get(url, cookies, timeoutMillis, context);
+			}
+		};
+		ThrottledTransport throttledTransport = new ThrottledTransport(transport, new RateLimiter(1000, 1000), 1);
+		TransportResponse response = throttledTransport.get(URL, new CookieJar(), 1000, FetchContext.unbounded());
+		try {
+			assertEquals(page, read(response.getBody()));
+			assertEquals(compressed.length, response.getBytesReceived());
+		} finally {
+			response.close();
+		}
+	}
+	
+	@Test
+	public void plainBodyIsCountedAsItIsRead() throws IOException {
+		byte[] page = page().getBytes(UTF_8);
+		TransportResponse response = new TransportResponse(new URL(URL), 200, UTF_8, new ByteArrayInputStream(page), System.nanoTime(), null);
+		try {
+			read(response.getBody());
+			assertEquals(page.length, response.getBytesReceived());
+		} finally {
+			response.close();
+		}
+	}
+	
+	private String page() {
+		StringBuilder page = new StringBuilder("<html><body><table>");
+		for (int row = 0; row < 200; row++) {
+			page.append("<tr><td>registratie</td><td>08:00</td></tr>");
+		}
+		return page.append("</table></body></html>").toString();
+	}
+	
+	private byte[] gzip(String page) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		try {
+			out.write(page.getBytes(UTF_8));
+		} finally {
+			out.close();
+		}
+		return bytes.toByteArray();
+	}
+	
+	private String read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[512];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		return new String(bytes.toByteArray(), UTF_8);
+	}
+
+}